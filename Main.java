@@ -1,6 +0,0 @@
-import java.io.IOException;
-import java.util.Scanner;
-
-public class Main {
-    private final ImageProcessor processor = new ImageProcessor();
-}
@@ -0,0 +1,609 @@
+package uk.ac.nulondon;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Ad-hoc measurements for the carving engine.
+ * Run with the name of the benchmark to execute, e.g. {@code java -cp benchmarks.jar uk.ac.nulondon.Benchmarks memory}.
+ * The warmed-up regression benchmarks of the hot paths are the JMH benchmarks next to this class.
+ */
+public class Benchmarks {
+
+    /**
+     * Receives the results of the timed operations, so they stay live.
+     */
+    static int sink;
+
+    /**
+     * Returns the heap in use after a couple of garbage collections.
+     *
+     * @return the used heap in bytes
+     */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Measures the retained heap of an {@link Image} built from a 4000x3000 picture.
+     */
+    static void memory() {
+        int width = 4000;
+        int height = 3000;
+        BufferedImage source = SyntheticImages.create(width, height);
+        long before = usedHeap();
+        Image image = new Image(source);
+        long after = usedHeap();
+        long bytes = after - before;
+        System.out.printf("memory %dx%d: %.1f MB retained, %.2f bytes/pixel%n",
+                width, height, bytes / 1e6, (double) bytes / ((long) width * height));
+        // keep the image reachable until after the measurement
+        System.out.println("width check: " + image.getWidth());
+    }
+
+    /**
+     * Compares the time per seam of full and incremental seam search on 1080p and 4K images.
+     * Each seam is found and removed; the first seam, which fills the caches, is not counted.
+     */
+    static void seams() {
+        int[][] sizes = {{1920, 1080}, {3840, 2160}};
+        int count = 50;
+        for (int[] size : sizes) {
+            BufferedImage source = SyntheticImages.create(size[0], size[1]);
+            for (boolean incremental : new boolean[]{false, true}) {
+                Image image = new Image(source);
+                image.setIncrementalSeams(incremental);
+                image.removeSeam(image.getSeam());
+                long start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    image.removeSeam(image.getSeam());
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("seams %dx%d %s: %.2f ms/seam%n", size[0], size[1],
+                        incremental ? "incremental" : "full", elapsed / 1e6 / count);
+            }
+        }
+    }
+
+    /**
+     * Compares the time per seam of vertical and horizontal seams on a 1080p image, searching and
+     * removing them on the same row-major storage, then times shrinking both dimensions by 10%.
+     * The first seam of each direction, which fills the caches, is not counted.
+     */
+    static void horizontal() {
+        int width = 1920;
+        int height = 1080;
+        int count = 50;
+        BufferedImage source = SyntheticImages.create(width, height);
+        for (boolean across : new boolean[]{false, true}) {
+            Image image = new Image(source);
+            if (across) {
+                image.removeHorizontalSeam(image.getHorizontalSeam());
+            } else {
+                image.removeSeam(image.getSeam());
+            }
+            long searchNanos = 0;
+            long removalNanos = 0;
+            for (int i = 0; i < count; i++) {
+                long start = System.nanoTime();
+                int[] seam = across ? image.getHorizontalSeam() : image.getSeam();
+                long found = System.nanoTime();
+                if (across) {
+                    image.removeHorizontalSeam(seam);
+                } else {
+                    image.removeSeam(seam);
+                }
+                removalNanos += System.nanoTime() - found;
+                searchNanos += found - start;
+            }
+            System.out.printf("horizontal %dx%d %s seams: %.2f ms search + %.2f ms removal per seam%n",
+                    width, height, across ? "horizontal" : "vertical", searchNanos / 1e6 / count,
+                    removalNanos / 1e6 / count);
+        }
+        for (CarveMode mode : CarveMode.values()) {
+            Image image = new Image(source);
+            long start = System.nanoTime();
+            image.carveToSize(width * 9 / 10, height * 9 / 10, mode);
+            System.out.printf("horizontal %dx%d -> %dx%d %s: %.2f s%n", width, height, image.getWidth(),
+                    image.getHeight(), mode, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Times widening a 2000x1500 image by 20% with seam insertion, and undoing it.
+     *
+     * @throws IOException if the synthetic image cannot be written or read
+     */
+    static void enlarge() throws IOException {
+        File input = File.createTempFile("enlarge", ".png");
+        input.deleteOnExit();
+        ImageIO.write(SyntheticImages.create(2000, 1500), "png", input);
+        ImageProcessing processing = new ImageProcessing();
+        processing.load(input.getPath());
+        long start = System.nanoTime();
+        processing.enlargeToWidth(2400);
+        long enlarged = System.nanoTime();
+        processing.undo();
+        long undone = System.nanoTime();
+        System.out.printf("enlarge 2000x1500 -> 2400: %.2f s, undo %.2f s%n",
+                (enlarged - start) / 1e9, (undone - enlarged) / 1e9);
+    }
+
+    /**
+     * Compares pyramid seams with exact ones on a large image. Before every removal both the exact
+     * seam and the pyramid seam of the same image are found, their latencies timed and their
+     * total energies compared; the pyramid seam is then removed.
+     *
+     * @param width  the width of the synthetic image
+     * @param height the height of the synthetic image
+     * @param band   the pyramid band, in columns either side of the coarse path
+     * @param seams  the number of seams to compare
+     */
+    static void pyramid(int width, int height, int band, int seams) {
+        Image image = new Image(SyntheticImages.create(width, height));
+        image.setPyramidBand(band);
+        // the first search builds the energy map and the pyramid
+        image.removeSeam(image.getApproximateSeam());
+        long exactNanos = 0;
+        long pyramidNanos = 0;
+        double ratioSum = 0;
+        double worst = 1;
+        int same = 0;
+        for (int i = 0; i < seams; i++) {
+            long start = System.nanoTime();
+            int[] exact = image.getSeam();
+            long found = System.nanoTime();
+            int[] approximate = image.getApproximateSeam();
+            pyramidNanos += System.nanoTime() - found;
+            exactNanos += found - start;
+            double ratio = image.seamCost(approximate) / Math.max(image.seamCost(exact), Double.MIN_VALUE);
+            ratioSum += ratio;
+            worst = Math.max(worst, ratio);
+            same += Arrays.equals(exact, approximate) ? 1 : 0;
+            image.removeSeam(approximate);
+        }
+        System.out.printf("pyramid %dx%d band %d: exact %.2f ms/seam, pyramid %.2f ms/seam (%.1fx)%n",
+                width, height, band, exactNanos / 1e6 / seams, pyramidNanos / 1e6 / seams,
+                (double) exactNanos / pyramidNanos);
+        System.out.printf("pyramid %dx%d band %d: seam energy %.3fx exact on average, %.3fx at worst, %d of %d identical%n",
+                width, height, band, ratioSum / seams, worst, same, seams);
+    }
+
+    /**
+     * Times precomputing the removal order of a 2000x1500 image down to half its width, then
+     * producing it at ten widths from the index map, against carving each width from scratch,
+     * and the size and load time of the saved file.
+     *
+     * @throws IOException if the index file cannot be written or read
+     */
+    static void retarget() throws IOException {
+        BufferedImage source = SyntheticImages.create(2000, 1500);
+        long start = System.nanoTime();
+        RetargetableImage retargetable = RetargetableImage.precompute(source, 1000, CarveMode.EXACT);
+        long precomputed = System.nanoTime();
+        int widths = 10;
+        for (int i = 0; i < widths; i++) {
+            sink += retargetable.toWidth(1000 + i * 100).getWidth();
+        }
+        long filtered = System.nanoTime();
+        Image image = new Image(source);
+        image.carveToWidth(1500, CarveMode.EXACT);
+        long carved = System.nanoTime();
+        System.out.printf("retarget 2000x1500: precompute to 1000 %.2f s, %.1f ms per width from the map,"
+                        + " %.2f s to carve 1500 from scratch%n", (precomputed - start) / 1e9,
+                (filtered - precomputed) / 1e6 / widths, (carved - filtered) / 1e9);
+
+        Path file = Files.createTempFile("retarget", ".rtg");
+        try {
+            retargetable.save(file);
+            long loadStart = System.nanoTime();
+            RetargetableImage loaded = RetargetableImage.load(file);
+            System.out.printf("retarget 2000x1500: %.1f MB saved, loaded in %.1f ms%n",
+                    Files.size(file) / 1e6, (System.nanoTime() - loadStart) / 1e6);
+            sink += loaded.getMinWidth();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Times carving a 2000x1500 image to three widths through a {@link CarveCache}: the first
+     * request misses, the narrower ones after it hit the heap, and a new cache over the same
+     * directory hits the disk.
+     *
+     * @throws IOException if the cache directory cannot be written
+     */
+    static void cache() throws IOException {
+        BufferedImage source = SyntheticImages.create(2000, 1500);
+        Path directory = Files.createTempDirectory("carve-cache");
+        try {
+            CarveCache cache = new CarveCache(256L << 20, directory);
+            for (int width : new int[]{1400, 1600, 1800}) {
+                long start = System.nanoTime();
+                Image image = new Image(source);
+                sink += cache.carveToWidth(CarveCache.keyOf(image, "sobel"), image, width, CarveMode.EXACT).getWidth();
+                System.out.printf("cache 2000x1500 -> %d: %.1f ms%n", width, (System.nanoTime() - start) / 1e6);
+            }
+            CarveCache reopened = new CarveCache(256L << 20, directory);
+            long start = System.nanoTime();
+            Image image = new Image(source);
+            sink += reopened.carveToWidth(CarveCache.keyOf(image, "sobel"), image, 1500, CarveMode.EXACT).getWidth();
+            System.out.printf("cache 2000x1500 -> 1500 from disk: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+            System.out.println("cache " + cache.counters() + ", reopened " + reopened.counters());
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Times reducing a 4000x3000 image by 30% with both batch carving modes.
+     *
+     * @throws IOException if the synthetic image cannot be written or read
+     */
+    static void carve() throws IOException {
+        File input = File.createTempFile("carve", ".png");
+        input.deleteOnExit();
+        ImageIO.write(SyntheticImages.create(4000, 3000), "png", input);
+        for (CarveMode mode : CarveMode.values()) {
+            ImageProcessing processing = new ImageProcessing();
+            processing.load(input.getPath());
+            long start = System.nanoTime();
+            processing.carveToWidth(2800, mode);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("carve 4000x3000 -> 2800 %s: %.2f s%n", mode, elapsed / 1e9);
+        }
+    }
+
+    /**
+     * Times the seam search on a 4K image with the sequential solver and with
+     * {@link ParallelSeamSolver} on pools of 1, 2, 4, 8 and 16 threads.
+     * The energy map is cached first, so only the dynamic programming is measured.
+     */
+    static void threads() {
+        Image image = new Image(SyntheticImages.create(3840, 2160));
+        int[] expected = image.getSeam();
+        int repeats = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            image.getSeam();
+        }
+        System.out.printf("threads sequential: %.2f ms/seam%n", (System.nanoTime() - start) / 1e6 / repeats);
+        for (int threads : new int[]{1, 2, 4, 8, 16}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            image.setSeamSolver(new ParallelSeamSolver(pool, 512));
+            boolean same = Arrays.equals(expected, image.getSeam());
+            start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                image.getSeam();
+            }
+            System.out.printf("threads %d: %.2f ms/seam, same seam: %b%n", threads,
+                    (System.nanoTime() - start) / 1e6 / repeats, same);
+            pool.shutdown();
+        }
+        System.out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Compares a full energy pass on one thread with {@link Image#computeEnergyMap()} on a 4K image.
+     * A speed-up of at least half the processor count is expected but has not been measured:
+     * this has only been run on a single processor.
+     */
+    static void energy() {
+        Image image = new Image(SyntheticImages.create(3840, 2160));
+        image.computeEnergyMap();
+        int repeats = 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            image.computeEnergyRows(0, image.getHeight());
+        }
+        double sequential = (System.nanoTime() - start) / 1e6 / repeats;
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            image.computeEnergyMap();
+        }
+        double parallel = (System.nanoTime() - start) / 1e6 / repeats;
+        System.out.printf("energy 3840x2160: sequential %.2f ms, parallel %.2f ms (%.2fx on %d processors)%n",
+                sequential, parallel, sequential / parallel, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Measures every {@link CostFunction} on a 4K image in pixels per second: one sequential
+     * pass over all rows, after three warm-up passes, and a seam search on the map it fills,
+     * which runs the same solver whichever cost filled it.
+     */
+    static void costs() {
+        int width = 3840;
+        int height = 2160;
+        BufferedImage source = SyntheticImages.create(width, height);
+        int repeats = 10;
+        for (CostFunction cost : CostFunction.ALL) {
+            Image image = new Image(source);
+            image.setCostFunction(cost);
+            image.computeEnergyMap();
+            for (int i = 0; i < 3; i++) {
+                image.computeEnergyRows(0, height);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                image.computeEnergyRows(0, height);
+            }
+            double fillSeconds = (System.nanoTime() - start) / 1e9 / repeats;
+            image.getSeam();
+            start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                sink += image.getSeam()[0];
+            }
+            double searchSeconds = (System.nanoTime() - start) / 1e9 / repeats;
+            System.out.printf("cost %-13s %dx%d: fill %.1f MP/s, seam search %.1f MP/s%n", cost.name(), width, height,
+                    width * (double) height / 1e6 / fillSeconds, width * (double) height / 1e6 / searchSeconds);
+        }
+    }
+
+    /**
+     * Compares the throughput of the scalar and the vectorised row kernels on a 4K image,
+     * for the energy pass and the seam cost pass.
+     * Run with {@code --add-modules jdk.incubator.vector} to get the vectorised kernels.
+     */
+    static void vector() {
+        int width = 3840;
+        int height = 2160;
+        Image image = new Image(SyntheticImages.create(width, height));
+        short[][] luma = new short[height][width + 2];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                luma[row][col + 1] = Image.lumaOf(image.getRGB(row, col));
+            }
+        }
+        short[] blank = new short[width + 2];
+        double[][] energy = new double[height][width];
+        double[][] reference = null;
+        RowKernels[] candidates = {new ScalarKernels(), RowKernels.load()};
+        for (RowKernels kernels : candidates) {
+            double[] previous = new double[width];
+            double[] current = new double[width];
+            byte[] pointers = new byte[width];
+            double energyMs = 0;
+            double costMs = 0;
+            for (int repeat = 0; repeat < 6; repeat++) {
+                long start = System.nanoTime();
+                for (int row = 0; row < height; row++) {
+                    kernels.sobel(row > 0 ? luma[row - 1] : blank, luma[row],
+                            row + 1 < height ? luma[row + 1] : blank, width, energy[row]);
+                }
+                long mid = System.nanoTime();
+                for (int row = 1; row < height; row++) {
+                    kernels.cumulativeMin(previous, energy[row], current, pointers, 0, width, width);
+                    double[] swap = previous;
+                    previous = current;
+                    current = swap;
+                }
+                long end = System.nanoTime();
+                // the first run is warm-up
+                if (repeat > 0) {
+                    energyMs += (mid - start) / 1e6;
+                    costMs += (end - mid) / 1e6;
+                }
+            }
+            double megapixels = width * (double) height / 1e6 * 5;
+            System.out.printf("vector %s: energy %.1f MP/s, seam cost %.1f MP/s%n",
+                    kernels.name(), megapixels / (energyMs / 1e3), megapixels / (costMs / 1e3));
+            if (reference == null) {
+                reference = new double[height][];
+                for (int row = 0; row < height; row++) {
+                    reference[row] = energy[row].clone();
+                }
+            } else {
+                System.out.println("vector identical energy: " + Arrays.deepEquals(reference, energy));
+            }
+        }
+    }
+
+    /**
+     * Compares the integer luminance energy with the original floating-point brightness energy,
+     * per pixel and by the seams they pick.
+     */
+    static void accuracy() {
+        Image image = new Image(SyntheticImages.create(1920, 1080));
+        double maxAbsolute = 0;
+        double maxRelative = 0;
+        for (int row = 0; row < image.getHeight(); row++) {
+            for (int col = 0; col < image.getWidth(); col++) {
+                double fixed = image.energyAt(row, col);
+                double reference = image.referenceEnergyAt(row, col);
+                double difference = Math.abs(fixed - reference);
+                maxAbsolute = Math.max(maxAbsolute, difference);
+                if (reference >= 1) {
+                    maxRelative = Math.max(maxRelative, difference / reference);
+                }
+            }
+        }
+        System.out.printf("accuracy 1920x1080: max absolute error %.3g, max relative error %.3g%n",
+                maxAbsolute, maxRelative);
+
+        double[][] referenceMap = new double[image.getHeight()][image.getWidth()];
+        for (int row = 0; row < image.getHeight(); row++) {
+            for (int col = 0; col < image.getWidth(); col++) {
+                referenceMap[row][col] = image.referenceEnergyAt(row, col);
+            }
+        }
+        int[] referenceSeam = new SeamSolver().findSeam(referenceMap, image.getWidth(), image.getHeight());
+        System.out.println("accuracy same seam: " + Arrays.equals(referenceSeam, image.getSeam()));
+    }
+
+    /**
+     * Carves a few seams from a raw pixel file larger than the heap with {@link MappedImage}.
+     * The default 32768x16384 file is 2 GB; run with {@code -Xmx512m} to check it does not need the heap.
+     *
+     * @param width  the width of the raw image
+     * @param height the height of the raw image
+     * @param seams  the number of seams to remove
+     * @throws IOException if the raw file cannot be written
+     */
+    static void mapped(int width, int height, int seams) throws IOException {
+        Path file = Files.createTempFile(Paths.get("."), "mapped", ".raw");
+        try {
+            long start = System.nanoTime();
+            try (MappedImage image = MappedImage.create(file, width, height)) {
+                for (int row = 0; row < height; row++) {
+                    for (int col = 0; col < width; col++) {
+                        int r = (col * 255 / width + (col * 7 + row * 13) % 16) & 0xFF;
+                        int g = (row * 255 / height + (col * 3 ^ row) % 16) & 0xFF;
+                        image.setRGB(row, col, (r << 16) | (g << 8) | ((col ^ row) & 0x7F));
+                    }
+                }
+                System.out.printf("mapped %dx%d (%.2f GB) written in %.1f s%n", width, height,
+                        4.0 * width * height / (1L << 30), (System.nanoTime() - start) / 1e9);
+                start = System.nanoTime();
+                image.carveToWidth(width - seams);
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                System.out.printf("mapped %d seams in %.1f s (%.1f s/seam, %d passes), heap in use %.1f MB of %.1f MB max%n",
+                        seams, elapsed, elapsed / seams, image.getPasses(), usedHeap() / 1e6,
+                        Runtime.getRuntime().maxMemory() / 1e6);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Times decode, decode-to-model, model-to-raster and encode for a 4000x3000 (12 MP) picture
+     * stored as PNG and as JPEG, and compares the bulk raster copies with the per-pixel
+     * {@code getRGB}/{@code setRGB} loops they replaced.
+     *
+     * @throws IOException if the test files cannot be written or read
+     */
+    static void raster() throws IOException {
+        BufferedImage source = SyntheticImages.create(4000, 3000);
+        for (String format : new String[]{"png", "jpg"}) {
+            File file = File.createTempFile("raster", "." + format);
+            file.deleteOnExit();
+            ImageIO.write(source, format, file);
+            double decode = 0, perPixelModel = 0, bulkModel = 0, perPixelRaster = 0, bulkRaster = 0, encode = 0;
+            int repeats = 5;
+            int type = 0;
+            for (int repeat = 0; repeat <= repeats; repeat++) {
+                long t0 = System.nanoTime();
+                BufferedImage decoded = ImageIO.read(file);
+                long t1 = System.nanoTime();
+                int[][] perPixel = new int[decoded.getHeight()][decoded.getWidth()];
+                for (int y = 0; y < decoded.getHeight(); y++) {
+                    for (int x = 0; x < decoded.getWidth(); x++) {
+                        perPixel[y][x] = decoded.getRGB(x, y) & 0xFFFFFF;
+                    }
+                }
+                long t2 = System.nanoTime();
+                Image image = new Image(decoded);
+                long t3 = System.nanoTime();
+                BufferedImage out = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+                for (int y = 0; y < image.getHeight(); y++) {
+                    for (int x = 0; x < image.getWidth(); x++) {
+                        out.setRGB(x, y, image.getRGB(y, x));
+                    }
+                }
+                long t4 = System.nanoTime();
+                out = image.toBufferedImage();
+                long t5 = System.nanoTime();
+                ImageIO.write(out, "png", new ByteArrayOutputStream());
+                long t6 = System.nanoTime();
+                // the first run is warm-up
+                if (repeat > 0) {
+                    decode += (t1 - t0) / 1e6 / repeats;
+                    perPixelModel += (t2 - t1) / 1e6 / repeats;
+                    bulkModel += (t3 - t2) / 1e6 / repeats;
+                    perPixelRaster += (t4 - t3) / 1e6 / repeats;
+                    bulkRaster += (t5 - t4) / 1e6 / repeats;
+                    encode += (t6 - t5) / 1e6 / repeats;
+                }
+                type = decoded.getType();
+            }
+            System.out.printf("raster %s (decoded type %d): decode %.0f ms, to model %.0f ms per pixel / %.0f ms bulk,"
+                            + " to raster %.0f ms per pixel / %.0f ms bulk, png encode %.0f ms%n",
+                    format, type, decode, perPixelModel, bulkModel, perPixelRaster, bulkRaster, encode);
+        }
+    }
+
+    /**
+     * Runs the benchmark named by the first argument.
+     *
+     * @param args the name of the benchmark to run
+     */
+    public static void main(String[] args) throws IOException {
+        String name = args.length > 0 ? args[0] : "memory";
+        switch (name) {
+            case "memory":
+                memory();
+                break;
+            case "seams":
+                seams();
+                break;
+            case "carve":
+                carve();
+                break;
+            case "enlarge":
+                enlarge();
+                break;
+            case "pyramid":
+                pyramid(args.length > 1 ? Integer.parseInt(args[1]) : 8000,
+                        args.length > 2 ? Integer.parseInt(args[2]) : 6000,
+                        args.length > 3 ? Integer.parseInt(args[3]) : Image.DEFAULT_PYRAMID_BAND,
+                        args.length > 4 ? Integer.parseInt(args[4]) : 20);
+                break;
+            case "retarget":
+                retarget();
+                break;
+            case "cache":
+                cache();
+                break;
+            case "horizontal":
+                horizontal();
+                break;
+            case "threads":
+                threads();
+                break;
+            case "energy":
+                energy();
+                break;
+            case "costs":
+                costs();
+                break;
+            case "vector":
+                vector();
+                break;
+            case "accuracy":
+                accuracy();
+                break;
+            case "raster":
+                raster();
+                break;
+            case "mapped":
+                mapped(args.length > 1 ? Integer.parseInt(args[1]) : 32768,
+                        args.length > 2 ? Integer.parseInt(args[2]) : 16384,
+                        args.length > 3 ? Integer.parseInt(args[3]) : 3);
+                break;
+            default:
+                System.out.println("Unknown benchmark " + name);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.nulondon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the dynamic programming of {@link EnergyGrid} on its own, as a pure kernel,
+ * on the rounded energy of a square synthetic image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnergyGridBenchmark {
+
+    /**
+     * The width and height of the grid.
+     */
+    @Param({"256", "1024", "2048", "4096"})
+    public int size;
+
+    /**
+     * The grid searched.
+     */
+    private EnergyGrid energyGrid;
+
+    /**
+     * Fills the grid with the energy of the synthetic image.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Image image = new Image(SyntheticImages.create(size, size));
+        int[][] grid = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                grid[row][col] = (int) image.energyAt(row, col);
+            }
+        }
+        energyGrid = new EnergyGrid(grid);
+    }
+
+    /**
+     * Finds the lowest-energy seam of the grid.
+     *
+     * @return the seam
+     */
+    @Benchmark
+    public int[] seam() {
+        return energyGrid.getSeam();
+    }
+}
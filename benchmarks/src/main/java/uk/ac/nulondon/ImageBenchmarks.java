@@ -0,0 +1,111 @@
+package uk.ac.nulondon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-image hot paths on square synthetic images: the energy map, one seam search,
+ * decoding a PNG into an {@link Image} and encoding an {@link Image} to PNG.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageBenchmarks {
+
+    /**
+     * The width and height of the synthetic image.
+     */
+    @Param({"256", "1024", "2048", "4096"})
+    public int size;
+
+    /**
+     * The synthetic image encoded as a PNG.
+     */
+    private byte[] png;
+
+    /**
+     * The image the energy, seam and export benchmarks run on.
+     */
+    private Image image;
+
+    /**
+     * Builds the synthetic image and its PNG, and allocates the buffers the image keeps
+     * between calls, so they are not timed.
+     *
+     * @throws IOException if the image cannot be encoded
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BufferedImage source = SyntheticImages.create(size, size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(source, "png", out);
+        png = out.toByteArray();
+        image = new Image(source);
+        image.computeEnergyMap();
+        image.getSeam();
+    }
+
+    /**
+     * Computes the energy map from scratch.
+     *
+     * @return the energy map
+     */
+    @Benchmark
+    public double[][] energy() {
+        return image.computeEnergyMap();
+    }
+
+    /**
+     * Finds the lowest-energy vertical seam on the cached energy map.
+     *
+     * @return the seam
+     */
+    @Benchmark
+    public int[] seam() {
+        return image.getSeam();
+    }
+
+    /**
+     * Decodes the PNG into an {@link Image}.
+     *
+     * @return the image
+     * @throws IOException if the PNG cannot be decoded
+     */
+    @Benchmark
+    public Image load() throws IOException {
+        return new Image(ImageIO.read(new ByteArrayInputStream(png)));
+    }
+
+    /**
+     * Encodes the image to PNG in memory.
+     *
+     * @return the size of the PNG in bytes
+     * @throws IOException if the image cannot be encoded
+     */
+    @Benchmark
+    public int export() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image.toBufferedImage(), "png", out);
+        return out.size();
+    }
+}
@@ -0,0 +1,82 @@
+package uk.ac.nulondon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the seam search of {@link ParallelSeamSolver} on pools of 1 to 16 threads,
+ * to measure how it scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelSeamBenchmark {
+
+    /**
+     * The width and height of the synthetic image.
+     */
+    @Param({"256", "1024", "2048", "4096"})
+    public int size;
+
+    /**
+     * The number of threads in the pool.
+     */
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    /**
+     * The pool the solver runs on.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * The image searched, with the parallel solver.
+     */
+    private Image image;
+
+    /**
+     * Starts the pool and builds the image, with its energy map and cost table already allocated.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ForkJoinPool(threads);
+        image = new Image(SyntheticImages.create(size, size));
+        image.setSeamSolver(new ParallelSeamSolver(pool, 512));
+        image.getSeam();
+    }
+
+    /**
+     * Stops the pool.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Finds the lowest-energy vertical seam on the cached energy map.
+     *
+     * @return the seam
+     */
+    @Benchmark
+    public int[] seam() {
+        return image.getSeam();
+    }
+}
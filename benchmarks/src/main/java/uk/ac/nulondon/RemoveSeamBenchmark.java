@@ -0,0 +1,91 @@
+package uk.ac.nulondon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ImageProcessing#removeSeamEnergy()}: finding the lowest-energy seam and
+ * removing it with its undo record. The removal is undone after every call, outside the timing,
+ * so every call carves an image of the same width.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoveSeamBenchmark {
+
+    /**
+     * The width and height of the synthetic image.
+     */
+    @Param({"256", "1024", "2048", "4096"})
+    public int size;
+
+    /**
+     * The PNG the image is loaded from.
+     */
+    private File file;
+
+    /**
+     * The processor holding the image and its history.
+     */
+    private ImageProcessing processing;
+
+    /**
+     * Writes the synthetic image to a temporary PNG and loads it, with its energy map built.
+     *
+     * @throws IOException if the file cannot be written or read
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("benchmark", ".png");
+        ImageIO.write(SyntheticImages.create(size, size), "png", file);
+        processing = new ImageProcessing();
+        processing.load(file.getPath());
+        processing.getImage().getSeam();
+    }
+
+    /**
+     * Puts the removed seam back.
+     */
+    @TearDown(Level.Invocation)
+    public void restore() {
+        processing.undo();
+    }
+
+    /**
+     * Stops the exporter and deletes the PNG.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        processing.close();
+        file.delete();
+    }
+
+    /**
+     * Finds and removes one seam.
+     *
+     * @return the removed seam
+     */
+    @Benchmark
+    public int[] removeSeam() {
+        return processing.removeSeamEnergy();
+    }
+}
@@ -0,0 +1,36 @@
+package uk.ac.nulondon;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler always on, so every result reports its
+ * allocation rate and bytes allocated per operation next to the time.
+ * Takes the usual JMH options, e.g. {@code java -jar benchmarks.jar ImageBenchmarks.seam -p size=1024}.
+ */
+public class RunBenchmarks {
+
+    /**
+     * Runs the benchmarks selected by the JMH options given, or lists them or prints help if asked.
+     *
+     * @param args the JMH command-line options
+     * @throws CommandLineOptionException if the options cannot be parsed
+     * @throws RunnerException            if a benchmark fails
+     * @throws IOException                if the list or help cannot be printed
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+                || options.shouldListProfilers() || options.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
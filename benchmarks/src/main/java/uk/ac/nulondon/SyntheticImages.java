@@ -0,0 +1,35 @@
+package uk.ac.nulondon;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Builds the images the benchmarks run on.
+ */
+final class SyntheticImages {
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * Builds a reproducible image with smooth gradients and some noise,
+     * so the energy map is neither flat nor pure noise.
+     *
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @return the synthetic image
+     */
+    static BufferedImage create(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(16)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(16)) & 0xFF;
+                int b = ((x ^ y) & 0x7F) + random.nextInt(16);
+                img.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return img;
+    }
+}
@@ -0,0 +1,229 @@
+package uk.ac.nulondon;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes images to PNG files on a background thread, so encoding does not hold up editing.
+ * Callers hand over a snapshot that nothing else modifies. At most {@code capacity} files
+ * wait to be written; a caller blocks while the queue is full. Exporting to a file name
+ * that is still waiting replaces the queued snapshot, since only the newest one would survive.
+ */
+public class AsyncExporter {
+
+    /**
+     * The default number of files that may wait to be written.
+     */
+    public static final int DEFAULT_CAPACITY = 4;
+
+    /**
+     * The snapshots waiting to be written, by file name, oldest first.
+     */
+    private final LinkedHashMap<String, BufferedImage> pending = new LinkedHashMap<>();
+
+    /**
+     * The maximum number of files waiting to be written.
+     */
+    private final int capacity;
+
+    /**
+     * The thread writing the files, started on the first export.
+     */
+    private Thread writer;
+
+    /**
+     * Whether a file is being written right now.
+     */
+    private boolean writing;
+
+    /**
+     * Whether {@link #close()} has been called.
+     */
+    private boolean closed;
+
+    /**
+     * The number of files written.
+     */
+    private long written;
+
+    /**
+     * The number of queued snapshots replaced by a newer one before being written.
+     */
+    private long superseded;
+
+    /**
+     * The time spent encoding and writing files, in nanoseconds.
+     */
+    private long encodeNanos;
+
+    /**
+     * Constructs an exporter with the default capacity.
+     */
+    public AsyncExporter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an exporter.
+     *
+     * @param capacity the maximum number of files waiting to be written
+     */
+    public AsyncExporter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues a snapshot to be written as a PNG file, replacing any snapshot still waiting
+     * for the same file. Blocks while the queue is full.
+     *
+     * @param fileName the file to write
+     * @param snapshot the image to write, which must not be modified afterwards
+     */
+    public synchronized void export(String fileName, BufferedImage snapshot) {
+        if (closed) {
+            throw new IllegalStateException("The exporter is closed");
+        }
+        if (pending.containsKey(fileName)) {
+            pending.put(fileName, snapshot);
+            superseded++;
+            return;
+        }
+        while (pending.size() >= capacity) {
+            waitForWriter();
+        }
+        pending.put(fileName, snapshot);
+        if (writer == null) {
+            writer = new Thread(this::writeLoop, "image-exporter");
+            // close() flushes; a forgotten exporter must not keep the program alive
+            writer.setDaemon(true);
+            writer.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Blocks until every queued file has been written.
+     */
+    public synchronized void flush() {
+        while (!pending.isEmpty() || writing) {
+            waitForWriter();
+        }
+    }
+
+    /**
+     * Writes every queued file and stops the background thread.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            flush();
+            closed = true;
+            thread = writer;
+            notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of files written.
+     *
+     * @return the number of files written
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    /**
+     * Retrieves the number of queued snapshots dropped because a newer one for the same file arrived.
+     *
+     * @return the number of superseded snapshots
+     */
+    public synchronized long getSuperseded() {
+        return superseded;
+    }
+
+    /**
+     * Retrieves the time the background thread has spent encoding and writing files.
+     *
+     * @return the encode time in nanoseconds
+     */
+    public synchronized long getEncodeNanos() {
+        return encodeNanos;
+    }
+
+    /**
+     * Takes the oldest snapshot off the queue and writes it, until the exporter is closed.
+     */
+    private void writeLoop() {
+        while (true) {
+            String fileName;
+            BufferedImage snapshot;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    waitForWriter();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                Iterator<Map.Entry<String, BufferedImage>> oldest = pending.entrySet().iterator();
+                Map.Entry<String, BufferedImage> entry = oldest.next();
+                oldest.remove();
+                fileName = entry.getKey();
+                snapshot = entry.getValue();
+                writing = true;
+                notifyAll();
+            }
+
+            CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.ENCODE);
+            long start = System.nanoTime();
+            File file = new File(fileName);
+            boolean saved = false;
+            try {
+                ImageIO.write(snapshot, "png", file);
+                System.out.printf("%s saved successfully (encoded in %d ms)%n", file.getName(),
+                        (System.nanoTime() - start) / 1_000_000);
+                saved = true;
+            } catch (IOException | RuntimeException e) {
+                // a bad snapshot must not stop the thread, or flush() would wait for it forever
+                System.out.println("Failed to export image " + file.getName() + ": " + e);
+            } finally {
+                timer.stop(snapshot.getWidth(), snapshot.getHeight(),
+                        (long) snapshot.getWidth() * snapshot.getHeight(), 0);
+                synchronized (this) {
+                    encodeNanos += System.nanoTime() - start;
+                    if (saved) {
+                        written++;
+                    }
+                    writing = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the queue to change, keeping the interrupt status if interrupted.
+     */
+    private void waitForWriter() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the image exporter", e);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package uk.ac.nulondon;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Carves every image of a directory to the same width, several images at a time.
+ * Each image gets its own {@link Image}, so no state is shared between jobs.
+ * Reading, decoding, encoding and writing run on cheap I/O threads (virtual threads
+ * where the runtime has them), while seam carving runs on a fixed pool sized to the
+ * processors. Before an image is decoded its size is read from the file header, and the
+ * job waits until its estimated memory fits in the budget, so a few huge files cannot
+ * exhaust the heap.
+ */
+public class BatchCarver {
+
+    /**
+     * The estimated heap needed per pixel while an image is carved: the decoded raster,
+     * the packed pixels, luminance, energy, the incremental cost table and the output raster.
+     */
+    static final long BYTES_PER_PIXEL = 32;
+
+    /**
+     * The unit memory permits are counted in, so budgets above 2 GB fit in a {@link Semaphore}.
+     */
+    private static final long PERMIT_BYTES = 1024;
+
+    /**
+     * The pool running the seam carving.
+     */
+    private final ExecutorService cpuPool;
+
+    /**
+     * The threads reading and writing files.
+     */
+    private final ExecutorService ioPool;
+
+    /**
+     * The memory budget, in units of {@link #PERMIT_BYTES}.
+     */
+    private final Semaphore memory;
+
+    /**
+     * The number of permits in {@link #memory}.
+     */
+    private final int memoryPermits;
+
+    /**
+     * Bounds the jobs started and not finished, so a large directory does not park a thread per file.
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * How the seams are found.
+     */
+    private final CarveMode mode;
+
+    /**
+     * The number of images carved and written.
+     */
+    private final AtomicInteger carved = new AtomicInteger();
+
+    /**
+     * The number of images that could not be read, carved or written.
+     */
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * The number of pixels in the images carved, before carving.
+     */
+    private final AtomicLong pixels = new AtomicLong();
+
+    /**
+     * The cache of earlier carves of the same pixels, or null to carve every image from scratch.
+     */
+    private volatile CarveCache cache;
+
+    /**
+     * Constructs a batch carver.
+     *
+     * @param cpuThreads   the number of images carved at the same time
+     * @param memoryBudget the heap the images in flight may use together, in bytes
+     * @param mode         how to find the seams
+     */
+    public BatchCarver(int cpuThreads, long memoryBudget, CarveMode mode) {
+        if (cpuThreads < 1) {
+            throw new IllegalArgumentException("Need at least one thread, got " + cpuThreads);
+        }
+        this.cpuPool = Executors.newFixedThreadPool(cpuThreads);
+        this.ioPool = ioExecutor();
+        this.memoryPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget / PERMIT_BYTES));
+        this.memory = new Semaphore(memoryPermits, true);
+        this.inFlight = new Semaphore(cpuThreads * 4);
+        this.mode = mode;
+    }
+
+    /**
+     * Constructs a batch carver with one carving thread per processor and half the maximum heap as budget.
+     *
+     * @param mode how to find the seams
+     */
+    public BatchCarver(CarveMode mode) {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 2, mode);
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task if the runtime supports them,
+     * or else a cached pool of platform threads.
+     *
+     * @return the executor for file I/O
+     */
+    static ExecutorService ioExecutor() {
+        try {
+            // looked up by name, so the class still compiles and runs on runtimes without virtual threads
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Sets the cache of earlier carves, so images seen before, under any name, skip the seam search.
+     *
+     * @param cache the cache, or null to carve every image from scratch
+     */
+    public void setCache(CarveCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Carves every image of a directory and writes the results, under the same names, to another.
+     * Images already narrower than the target are written unchanged.
+     *
+     * @param inputDir    the directory holding the images
+     * @param outputDir   the directory to write the carved images to, created if needed
+     * @param targetWidth the width to carve every image to
+     * @throws IOException if a directory cannot be listed or created
+     */
+    public void run(Path inputDir, Path outputDir, int targetWidth) throws IOException {
+        Files.createDirectories(outputDir);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(inputDir)) {
+            files = listing.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        long start = System.nanoTime();
+        List<Future<?>> jobs = new ArrayList<>();
+        try {
+            for (Path file : files) {
+                inFlight.acquire();
+                jobs.add(ioPool.submit(() -> {
+                    try {
+                        process(file, outputDir.resolve(file.getFileName()), targetWidth);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+            for (Future<?> job : jobs) {
+                try {
+                    job.get();
+                } catch (ExecutionException e) {
+                    failed.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d images carved, %d failed in %.2f s: %.2f images/s, %.2f MP/s%n",
+                carved.get(), failed.get(), seconds, carved.get() / seconds, pixels.get() / 1e6 / seconds);
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        cpuPool.shutdown();
+        ioPool.shutdown();
+    }
+
+    /**
+     * Reads, carves and writes one image, holding its share of the memory budget meanwhile.
+     *
+     * @param in          the image to read
+     * @param out         the file to write
+     * @param targetWidth the width to carve the image to
+     */
+    private void process(Path in, Path out, int targetWidth) {
+        long[] size;
+        try {
+            size = readSize(in);
+        } catch (IOException e) {
+            System.err.println("Skipping " + in.getFileName() + ": " + e.getMessage());
+            failed.incrementAndGet();
+            return;
+        }
+        long pixelCount = size[0] * size[1];
+        // an image larger than the whole budget runs on its own
+        int permits = (int) Math.min(memoryPermits, Math.max(1, pixelCount * BYTES_PER_PIXEL / PERMIT_BYTES));
+        try {
+            memory.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            BufferedImage decoded = ImageIO.read(in.toFile());
+            if (decoded == null) {
+                throw new IOException("cannot decode");
+            }
+            BufferedImage result = cpuPool.submit(() -> {
+                Image image = new Image(decoded);
+                CarveCache carveCache = cache;
+                if (image.getWidth() > targetWidth && carveCache != null) {
+                    return carveCache.carveToWidth(CarveCache.keyOf(image, image.getCostFunction().name()), image, targetWidth, mode);
+                }
+                if (image.getWidth() > targetWidth) {
+                    image.carveToWidth(targetWidth, mode);
+                }
+                return image.toBufferedImage();
+            }).get();
+            String name = out.getFileName().toString();
+            if (!ImageIO.write(result, name.substring(name.lastIndexOf('.') + 1), out.toFile())) {
+                throw new IOException("no writer for " + name);
+            }
+            carved.incrementAndGet();
+            pixels.addAndGet(pixelCount);
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Failed to carve " + in.getFileName() + ": " + e.getMessage());
+            failed.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            memory.release(permits);
+        }
+    }
+
+    /**
+     * Reads the size of an image from its header without decoding the pixels.
+     *
+     * @param file the image file
+     * @return the width and the height of the image
+     * @throws IOException if the file cannot be read or is not an image
+     */
+    static long[] readSize(Path file) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("not an image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                return new long[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package uk.ac.nulondon;
+
+/**
+ * How little blue a pixel has: 255 minus its blue channel, so the cheapest seam is the one
+ * with the most blue in total. Used to highlight the bluest seam.
+ */
+public class BluenessCost implements CostFunction {
+
+    @Override
+    public void fill(int[] rgbUp, int[] rgb, int[] rgbDown, short[] lumaUp, short[] luma, short[] lumaDown,
+                     int width, int from, int to, double[] out) {
+        for (int col = from; col < to; col++) {
+            out[col] = 255 - (rgb[col] & 0xFF);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "blueness";
+    }
+}
@@ -0,0 +1,485 @@
+package uk.ac.nulondon;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the results of carving the same pictures again: the energy map of an image and the order
+ * in which carving removes its pixels, as a {@link RetargetableImage}. Entries are keyed by a hash
+ * of the decoded pixels and the energy function, so a file that is renamed, re-encoded or sent
+ * again hits, while any change to a pixel misses.
+ * <p>
+ * Entries live on the heap in least-recently-used order within a byte budget. With a directory
+ * given, every entry is also written there, one little-endian binary file each, so entries
+ * survive evictions and restarts; a miss on the heap then falls back to the disk.
+ * All methods are safe to call from several threads.
+ * <p>
+ * The cumulative-cost tables of the seam search are not cached. A cached removal order already
+ * answers every width the tables would have been searched for, so caching the tables as well would
+ * only spend the byte budget on entries that are never read.
+ */
+public class CarveCache {
+
+    /**
+     * The first int of an energy map file, "CEN1" read as a little-endian int.
+     */
+    static final int ENERGY_MAGIC = 0x314E4543;
+
+    /**
+     * The size of the header of an energy map file: the magic number, width and height.
+     */
+    static final int ENERGY_HEADER_BYTES = 12;
+
+    /**
+     * The entries on the heap, least recently used first.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The heap the entries may use together, in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * The directory entries are also written to, or null to keep them on the heap only.
+     */
+    private final Path directory;
+
+    /**
+     * The approximate heap used by the entries, in bytes.
+     */
+    private long bytes;
+
+    /**
+     * The number of lookups answered from the heap.
+     */
+    private long hits;
+
+    /**
+     * The number of lookups answered from the disk.
+     */
+    private long diskHits;
+
+    /**
+     * The number of lookups that found nothing usable.
+     */
+    private long misses;
+
+    /**
+     * The number of entries dropped from the heap to stay within the budget.
+     */
+    private long evictions;
+
+    /**
+     * A cached value with its size.
+     */
+    private static class Entry {
+
+        /** The energy map or the retargetable image. */
+        final Object value;
+
+        /** The approximate heap the value uses. */
+        final long bytes;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param value the cached value
+         * @param bytes the approximate heap the value uses
+         */
+        Entry(Object value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Constructs a cache.
+     *
+     * @param maxBytes  the heap the entries may use together, in bytes
+     * @param directory the directory to also write entries to, created if needed, or null for none
+     * @throws IOException if the directory cannot be created
+     */
+    public CarveCache(long maxBytes, Path directory) throws IOException {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+    }
+
+    /**
+     * Computes the key of an image: a SHA-256 hash of its size and pixels, followed by the energy function.
+     * Removal orders are stored under this key together with the mode that found them, see
+     * {@link #seamsName(String, CarveMode, int)}.
+     *
+     * @param image  the image, before any seam is removed
+     * @param energy the name of the energy function, e.g. {@code sobel}
+     * @return the key, safe to use as a file name
+     */
+    public static String keyOf(Image image, String energy) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to have SHA-256
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer row = ByteBuffer.allocate(Math.max(8, image.getWidth() * Integer.BYTES));
+        row.putInt(image.getWidth()).putInt(image.getHeight()).flip();
+        digest.update(row);
+        for (int y = 0; y < image.getHeight(); y++) {
+            row.clear();
+            for (int x = 0; x < image.getWidth(); x++) {
+                row.putInt(image.getRGB(y, x));
+            }
+            row.flip();
+            digest.update(row);
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.append('-').append(energy).toString();
+    }
+
+    /**
+     * Computes the name of the removal order of an image carved in a mode, e.g.
+     * {@code <key>.exact.seams} or {@code <key>.pyramid-16.seams}. Pyramid searches with different
+     * bands can find different seams, so the band is part of the name.
+     *
+     * @param key  the key of the image, from {@link #keyOf(Image, String)}
+     * @param mode how the seams are found
+     * @param band the pyramid band of the image, only used in {@link CarveMode#PYRAMID} mode
+     * @return the name of the entry, safe to use as a file name
+     */
+    static String seamsName(String key, CarveMode mode, int band) {
+        String tag = mode.name().toLowerCase();
+        if (mode == CarveMode.PYRAMID) {
+            tag += "-" + band;
+        }
+        return key + "." + tag + ".seams";
+    }
+
+    /**
+     * Gives an image its energy map from the cache, or computes it and caches it.
+     *
+     * @param key   the key of the image, from {@link #keyOf(Image, String)}
+     * @param image the image, before any seam is removed
+     */
+    public void loadEnergy(String key, Image image) {
+        double[][] cached = (double[][]) lookup(key + ".energy");
+        if (cached != null && cached.length == image.getHeight()
+                && (cached.length == 0 || cached[0].length == image.getWidth())) {
+            image.setEnergyMap(cached);
+            return;
+        }
+        double[][] live = image.computeEnergyMap();
+        // the image patches its map in place, so the cache keeps its own copy
+        double[][] copy = new double[image.getHeight()][];
+        for (int row = 0; row < copy.length; row++) {
+            copy[row] = Arrays.copyOf(live[row], image.getWidth());
+        }
+        store(key + ".energy", copy, 16L + copy.length * (16L + 8L * image.getWidth()));
+    }
+
+    /**
+     * Carves an image to a width, reusing the removal order of an earlier carve of the same pixels
+     * if it went at least as narrow. Otherwise the image is carved to the width while recording the
+     * removal order, which is then cached.
+     * In {@link CarveMode#FAST} mode the batches are those of carving to the narrowest width cached,
+     * so the result can differ slightly from carving to this width directly.
+     *
+     * @param key         the key of the image, from {@link #keyOf(Image, String)}
+     * @param image       the image, before any seam is removed; it is carved if the cache misses
+     * @param targetWidth the width to carve the image to
+     * @param mode        how to find the seams
+     * @return the carved image
+     */
+    public BufferedImage carveToWidth(String key, Image image, int targetWidth, CarveMode mode) {
+        if (targetWidth < 1 || targetWidth > image.getWidth()) {
+            throw new IllegalArgumentException("Cannot carve an image " + image.getWidth()
+                    + " pixels wide to " + targetWidth);
+        }
+        String seamsKey = seamsName(key, mode, image.getPyramidBand());
+        RetargetableImage cached = (RetargetableImage) lookup(seamsKey);
+        if (cached != null && cached.getMinWidth() <= targetWidth && cached.getWidth() == image.getWidth()
+                && cached.getHeight() == image.getHeight()) {
+            return cached.toWidth(targetWidth);
+        }
+        loadEnergy(key, image);
+        RetargetableImage carved = RetargetableImage.precompute(image, targetWidth, mode);
+        store(seamsKey, carved, carved.bytes());
+        return carved.toWidth(targetWidth);
+    }
+
+    /**
+     * Retrieves the number of lookups answered from the heap.
+     *
+     * @return the number of heap hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of lookups answered from the disk.
+     *
+     * @return the number of disk hits
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * Retrieves the number of lookups that found nothing usable, on the heap or on disk.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Retrieves the number of entries dropped from the heap to stay within the budget.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Retrieves the approximate heap used by the entries.
+     *
+     * @return the size of the entries in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Retrieves the counters as {@code name value} pairs, for metrics endpoints and logs.
+     *
+     * @return the counters by name, in a fixed order
+     */
+    public synchronized Map<String, Long> counters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("cache_hits", hits);
+        counters.put("cache_disk_hits", diskHits);
+        counters.put("cache_misses", misses);
+        counters.put("cache_evictions", evictions);
+        counters.put("cache_entries", (long) entries.size());
+        counters.put("cache_bytes", bytes);
+        return counters;
+    }
+
+    /**
+     * Looks an entry up on the heap, then on disk, counting the outcome.
+     *
+     * @param name the name of the entry
+     * @return the cached value, or null on a miss
+     */
+    private Object lookup(String name) {
+        synchronized (this) {
+            Entry entry = entries.get(name);
+            if (entry != null) {
+                hits++;
+                return entry.value;
+            }
+        }
+        Object value = directory == null ? null : readFromDisk(name);
+        synchronized (this) {
+            if (value == null) {
+                misses++;
+                return null;
+            }
+            diskHits++;
+        }
+        putOnHeap(name, value, value instanceof RetargetableImage image ? image.bytes()
+                : 16L + ((double[][]) value).length * (16L + 8L * widthOf((double[][]) value)));
+        return value;
+    }
+
+    /**
+     * Caches a value on the heap and, with a directory, on disk.
+     *
+     * @param name  the name of the entry
+     * @param value the value, which must not be modified afterwards
+     * @param size  the approximate heap the value uses
+     */
+    private void store(String name, Object value, long size) {
+        putOnHeap(name, value, size);
+        if (directory != null) {
+            try {
+                writeToDisk(name, value);
+            } catch (IOException e) {
+                // the disk tier is best effort, the entry is still on the heap
+                System.err.println("Could not write cache entry " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds an entry to the heap and evicts the least recently used ones beyond the budget.
+     * A value larger than the whole budget is not kept on the heap.
+     *
+     * @param name  the name of the entry
+     * @param value the value
+     * @param size  the approximate heap the value uses
+     */
+    private synchronized void putOnHeap(String name, Object value, long size) {
+        if (size > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(name, new Entry(value, size));
+        if (previous != null) {
+            bytes -= previous.bytes;
+        }
+        bytes += size;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Writes an entry to its file, through a temporary file so a crash never leaves half an entry.
+     *
+     * @param name  the name of the entry
+     * @param value the energy map or retargetable image
+     * @throws IOException if the file cannot be written
+     */
+    private void writeToDisk(String name, Object value) throws IOException {
+        Path file = directory.resolve(name);
+        Path temporary = Files.createTempFile(directory, name, ".tmp");
+        try {
+            if (value instanceof RetargetableImage image) {
+                image.save(temporary);
+            } else {
+                writeEnergy(temporary, (double[][]) value);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads an entry from its file.
+     *
+     * @param name the name of the entry
+     * @return the value, or null if there is no file or it cannot be read
+     */
+    private Object readFromDisk(String name) {
+        Path file = directory.resolve(name);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return name.endsWith(".seams") ? RetargetableImage.load(file) : readEnergy(file);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable cache entry " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes an energy map: a 12-byte header (magic number, width, height as little-endian ints)
+     * followed by the energies as little-endian doubles, row by row.
+     *
+     * @param file   the file to write
+     * @param energy the energy map
+     * @throws IOException if the file cannot be written
+     */
+    static void writeEnergy(Path file, double[][] energy) throws IOException {
+        int width = widthOf(energy);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(ENERGY_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(ENERGY_MAGIC).putInt(width).putInt(energy.length).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer row = ByteBuffer.allocate(width * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (double[] values : energy) {
+                row.clear();
+                row.asDoubleBuffer().put(values, 0, width);
+                while (row.hasRemaining()) {
+                    channel.write(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an energy map written by {@link #writeEnergy(Path, double[][])}.
+     *
+     * @param file the file to read
+     * @return the energy map
+     * @throws IOException if the file cannot be read or is not an energy map
+     */
+    static double[][] readEnergy(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(ENERGY_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+            int magic = header.getInt();
+            int width = header.getInt();
+            int height = header.getInt();
+            if (magic != ENERGY_MAGIC || width < 0 || height < 0
+                    || channel.size() != ENERGY_HEADER_BYTES + (long) width * height * Double.BYTES) {
+                throw new IOException(file + " is not an energy map");
+            }
+            double[][] energy = new double[height][width];
+            ByteBuffer row = ByteBuffer.allocate(width * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (double[] values : energy) {
+                row.clear();
+                readFully(channel, row);
+                row.flip();
+                row.asDoubleBuffer().get(values);
+            }
+            return energy;
+        }
+    }
+
+    /**
+     * Fills the remaining space of a buffer.
+     *
+     * @param channel the channel to read from
+     * @param buffer  the buffer to fill
+     * @throws IOException if the channel ends first or cannot be read
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Retrieves the width of an energy map.
+     *
+     * @param energy the energy map
+     * @return the length of its rows, or 0 if it has none
+     */
+    private static int widthOf(double[][] energy) {
+        return energy.length == 0 ? 0 : energy[0].length;
+    }
+}
@@ -0,0 +1,39 @@
+package uk.ac.nulondon;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one timed carving phase, committed by {@link CarveMetrics}.
+ * Record with {@code -XX:StartFlightRecording} and look for {@code imagecompression.Carve}.
+ */
+@Name("imagecompression.Carve")
+@Label("Carving Phase")
+@Category("Image Compression")
+@Description("One phase of loading, carving, editing or exporting an image")
+@StackTrace(false)
+class CarveEvent extends jdk.jfr.Event {
+
+    /** The name of the phase. */
+    @Label("Phase")
+    String phase;
+
+    /** The width of the image when the phase started. */
+    @Label("Width")
+    int width;
+
+    /** The height of the image. */
+    @Label("Height")
+    int height;
+
+    /** The number of seams found, removed, highlighted or restored. */
+    @Label("Seams")
+    int seams;
+
+    /** The number of pixels the phase went through. */
+    @Label("Pixels")
+    long pixels;
+}
@@ -0,0 +1,384 @@
+package uk.ac.nulondon;
+
+import jdk.jfr.EventType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Times every phase of carving: a latency histogram per {@link CarvePhase}, the pixels it
+ * went through, and a {@link CarveEvent} for Flight Recorder. The engine records into
+ * {@link #DEFAULT}; {@link #report(MetricsReporter)} hands a snapshot to a reporter that
+ * logs it or formats it for scraping.
+ * <p>
+ * The histograms have eight buckets per power of two of nanoseconds, so a percentile is
+ * within about 6% of the true value, and recording is a few atomic increments.
+ */
+public class CarveMetrics {
+
+    /**
+     * The metrics the engine records into.
+     */
+    public static final CarveMetrics DEFAULT = new CarveMetrics();
+
+    /**
+     * The number of sub-buckets per power of two, as a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The number of sub-buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Enough buckets for any positive long.
+     */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * The latency histogram of every phase, indexed by phase ordinal then bucket.
+     */
+    private final AtomicLongArray[] histograms = new AtomicLongArray[CarvePhase.values().length];
+
+    /**
+     * The total time of every phase, in nanoseconds.
+     */
+    private final AtomicLongArray totalNanos = new AtomicLongArray(CarvePhase.values().length);
+
+    /**
+     * The total pixels every phase went through.
+     */
+    private final AtomicLongArray totalPixels = new AtomicLongArray(CarvePhase.values().length);
+
+    /**
+     * The total seams every phase handled.
+     */
+    private final AtomicLongArray totalSeams = new AtomicLongArray(CarvePhase.values().length);
+
+    /**
+     * The longest time of every phase, in nanoseconds.
+     */
+    private final AtomicLong[] maxNanos = new AtomicLong[CarvePhase.values().length];
+
+    /**
+     * Constructs empty metrics.
+     */
+    public CarveMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new AtomicLongArray(BUCKETS);
+            maxNanos[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param phase the phase
+     * @return the timer to stop when the phase ends
+     */
+    public Timer start(CarvePhase phase) {
+        return new Timer(this, phase);
+    }
+
+    /**
+     * Records one run of a phase.
+     *
+     * @param phase  the phase
+     * @param nanos  how long it took
+     * @param pixels how many pixels it went through
+     * @param seams  how many seams it handled
+     */
+    public void record(CarvePhase phase, long nanos, long pixels, int seams) {
+        int index = phase.ordinal();
+        histograms[index].incrementAndGet(bucket(Math.max(0, nanos)));
+        totalNanos.addAndGet(index, nanos);
+        totalPixels.addAndGet(index, pixels);
+        totalSeams.addAndGet(index, seams);
+        maxNanos[index].accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Takes a snapshot of every phase that has run at least once.
+     *
+     * @return the statistics of every phase, in the order of {@link CarvePhase}
+     */
+    public List<PhaseStats> snapshot() {
+        List<PhaseStats> stats = new ArrayList<>();
+        for (CarvePhase phase : CarvePhase.values()) {
+            int index = phase.ordinal();
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts[bucket] = histograms[index].get(bucket);
+                count += counts[bucket];
+            }
+            if (count > 0) {
+                stats.add(new PhaseStats(phase, count, totalNanos.get(index), totalPixels.get(index),
+                        totalSeams.get(index), maxNanos[index].get(), counts));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Hands a snapshot of every phase to a reporter.
+     *
+     * @param reporter the reporter to send the numbers to
+     */
+    public void report(MetricsReporter reporter) {
+        reporter.report(snapshot());
+    }
+
+    /**
+     * Clears every histogram and counter.
+     */
+    public void reset() {
+        for (int i = 0; i < histograms.length; i++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                histograms[i].set(bucket, 0);
+            }
+            totalNanos.set(i, 0);
+            totalPixels.set(i, 0);
+            totalSeams.set(i, 0);
+            maxNanos[i].set(0);
+        }
+    }
+
+    /**
+     * Finds the histogram bucket of a duration.
+     *
+     * @param nanos the duration, not negative
+     * @return the bucket index
+     */
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Finds the middle of the durations a bucket holds.
+     *
+     * @param bucket the bucket index
+     * @return the representative duration in nanoseconds
+     */
+    static double bucketMidpoint(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) * width;
+        return low + width / 2.0;
+    }
+
+    /**
+     * Times one run of a phase, and emits its Flight Recorder event when stopped if a recording has it enabled.
+     */
+    public static class Timer {
+
+        /**
+         * The Flight Recorder type of {@link CarveEvent}, looked up once to tell whether a recording wants it.
+         */
+        private static final EventType EVENT_TYPE = EventType.getEventType(CarveEvent.class);
+
+        /**
+         * The metrics to record into.
+         */
+        private final CarveMetrics metrics;
+
+        /**
+         * The phase being timed.
+         */
+        private final CarvePhase phase;
+
+        /**
+         * When the phase started.
+         */
+        private final long start;
+
+        /**
+         * The Flight Recorder event, begun with the timer, or null if no recording had it enabled.
+         */
+        private final CarveEvent event;
+
+        /**
+         * Starts timing a phase.
+         *
+         * @param metrics the metrics to record into
+         * @param phase   the phase
+         */
+        private Timer(CarveMetrics metrics, CarvePhase phase) {
+            this.metrics = metrics;
+            this.phase = phase;
+            // without a recording, skip allocating an event that would never be committed
+            if (EVENT_TYPE.isEnabled()) {
+                this.event = new CarveEvent();
+                event.begin();
+            } else {
+                this.event = null;
+            }
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Stops timing and records the phase.
+         *
+         * @param width  the width of the image
+         * @param height the height of the image
+         * @param pixels how many pixels the phase went through
+         * @param seams  how many seams the phase handled
+         */
+        public void stop(int width, int height, long pixels, int seams) {
+            metrics.record(phase, System.nanoTime() - start, pixels, seams);
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.width = width;
+                event.height = height;
+                event.pixels = pixels;
+                event.seams = seams;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * An immutable snapshot of the statistics of one phase.
+     */
+    public static class PhaseStats {
+
+        /** The phase. */
+        private final CarvePhase phase;
+
+        /** The number of runs. */
+        private final long count;
+
+        /** The total time of all runs, in nanoseconds. */
+        private final long totalNanos;
+
+        /** The pixels all runs went through. */
+        private final long pixels;
+
+        /** The seams all runs handled. */
+        private final long seams;
+
+        /** The longest run, in nanoseconds. */
+        private final long maxNanos;
+
+        /** The number of runs in every histogram bucket. */
+        private final long[] buckets;
+
+        /**
+         * Constructs a snapshot.
+         *
+         * @param phase      the phase
+         * @param count      the number of runs
+         * @param totalNanos the total time of all runs
+         * @param pixels     the pixels all runs went through
+         * @param seams      the seams all runs handled
+         * @param maxNanos   the longest run
+         * @param buckets    the number of runs in every histogram bucket
+         */
+        PhaseStats(CarvePhase phase, long count, long totalNanos, long pixels, long seams, long maxNanos,
+                   long[] buckets) {
+            this.phase = phase;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.pixels = pixels;
+            this.seams = seams;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        /**
+         * Retrieves the phase.
+         *
+         * @return the phase
+         */
+        public CarvePhase getPhase() {
+            return phase;
+        }
+
+        /**
+         * Retrieves the number of runs.
+         *
+         * @return the number of runs
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Retrieves the total time of all runs.
+         *
+         * @return the total time in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Retrieves the pixels all runs went through.
+         *
+         * @return the number of pixels
+         */
+        public long getPixels() {
+            return pixels;
+        }
+
+        /**
+         * Retrieves the seams all runs handled.
+         *
+         * @return the number of seams
+         */
+        public long getSeams() {
+            return seams;
+        }
+
+        /**
+         * Retrieves the longest run.
+         *
+         * @return the longest time in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Computes the throughput of the phase.
+         *
+         * @return the pixels gone through per second of the phase
+         */
+        public double getPixelsPerSecond() {
+            return totalNanos == 0 ? 0 : pixels / (totalNanos / 1e9);
+        }
+
+        /**
+         * Estimates a percentile of the run times from the histogram.
+         *
+         * @param quantile the quantile, from 0 to 1
+         * @return the estimated time in nanoseconds
+         */
+        public double getPercentile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= rank) {
+                    return Math.min(bucketMidpoint(bucket), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package uk.ac.nulondon;
+
+/**
+ * Enumerates the ways several seams can be removed in one call.
+ */
+public enum CarveMode {
+    /** Recompute the seams after every removal, giving the same result as removing them one by one. */
+    EXACT,
+    /** Take several non-crossing low-energy seams from each pass, trading some quality for speed. */
+    FAST,
+    /** Solve every seam on a downscaled pyramid and refine it in a band, for very large images. */
+    PYRAMID;
+
+    /**
+     * Looks a mode up by its name, ignoring case.
+     *
+     * @param name the name, e.g. {@code exact}
+     * @return the mode
+     */
+    public static CarveMode forName(String name) {
+        for (CarveMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("mode must be exact, fast or pyramid");
+    }
+}
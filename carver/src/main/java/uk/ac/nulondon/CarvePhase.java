@@ -0,0 +1,27 @@
+package uk.ac.nulondon;
+
+/**
+ * Enumerates the phases of carving that {@link CarveMetrics} times separately.
+ */
+public enum CarvePhase {
+    /** Reading a file and building an {@link Image} from it. */
+    DECODE,
+    /** Computing the energy map from scratch. */
+    ENERGY,
+    /** Finding the lowest-energy seam or seams. */
+    SEAM_SEARCH,
+    /** Removing seams from an image. */
+    SEAM_REMOVAL,
+    /** Duplicating seams to enlarge an image. */
+    SEAM_INSERTION,
+    /** Painting a seam in a color. */
+    HIGHLIGHT,
+    /** Recording an edit in the undo history. */
+    HISTORY,
+    /** Reverting the last edit. */
+    UNDO,
+    /** Copying the pixels into a raster for export. */
+    SNAPSHOT,
+    /** Encoding and writing an image file. */
+    ENCODE
+}
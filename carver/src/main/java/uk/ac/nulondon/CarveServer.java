@@ -0,0 +1,377 @@
+package uk.ac.nulondon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An HTTP service carving images sent to it, so other programs do not start a JVM per image.
+ * <pre>
+ * POST /carve?width=1200[&amp;height=800][&amp;mode=fast]   body: the image   response: the carved PNG
+ * GET  /metrics                          response: counters, latency percentiles and {@link CarveMetrics} as text
+ * </pre>
+ * Requests are carved on a fixed pool of workers with a bounded queue; when the queue is full
+ * the request is answered with 503 straight away, before its body is read. The request body
+ * is decoded as it arrives and the PNG is encoded straight into the response.
+ * The server only listens on the loopback interface.
+ */
+public class CarveServer {
+
+    /**
+     * The number of recent latencies the percentiles are computed from.
+     */
+    static final int LATENCY_WINDOW = 1024;
+
+    /**
+     * The number of request threads beyond one per worker and queued request, so metrics and
+     * 503 answers are still served while every worker and queue slot is taken.
+     */
+    static final int SPARE_REQUEST_THREADS = 4;
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads accepting requests and streaming bodies, a fixed number so a flood of
+     * connections cannot start unboundedly many.
+     */
+    private final ExecutorService requestThreads;
+
+    /**
+     * The workers carving images, with a bounded queue in front.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * How the seams are found.
+     */
+    private final CarveMode mode;
+
+    /**
+     * The number of carve requests received, including rejected ones.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * The number of carve requests answered with 503.
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * The number of carve requests that failed with a 4xx or 5xx other than 503.
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * The number of images being carved right now.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * The latencies of the last successful requests in nanoseconds, as a ring buffer.
+     */
+    private final long[] latencies = new long[LATENCY_WINDOW];
+
+    /**
+     * The number of latencies ever recorded.
+     */
+    private long latencyCount;
+
+    /**
+     * The cache of earlier carves of the same pixels, or null to carve every image from scratch.
+     */
+    private volatile CarveCache cache;
+
+    /**
+     * Creates a server listening on the loopback interface. Call {@link #start()} to serve requests.
+     *
+     * @param port          the port to listen on, or 0 for any free port
+     * @param workerThreads the number of images carved at the same time
+     * @param queueCapacity the number of requests that may wait for a worker
+     * @param mode          how to find the seams when a request does not say
+     * @throws IOException if the port cannot be bound
+     */
+    public CarveServer(int port, int workerThreads, int queueCapacity, CarveMode mode) throws IOException {
+        this.mode = mode;
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+        // a request thread waits for its carve, so one per worker and queue slot plus spares
+        requestThreads = Executors.newFixedThreadPool(workerThreads + queueCapacity + SPARE_REQUEST_THREADS);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(requestThreads);
+        server.createContext("/carve", this::handleCarve);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to {@code delaySeconds} for running ones, then stops the workers.
+     *
+     * @param delaySeconds how long to wait for running requests
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        workers.shutdown();
+        requestThreads.shutdown();
+    }
+
+    /**
+     * Sets the cache of earlier carves, so an image sent again, at any width, skips the seam search.
+     * Requests that change the height are always carved from scratch.
+     *
+     * @param cache the cache, or null to carve every image from scratch
+     */
+    public void setCache(CarveCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Retrieves the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Carves the image in the request body to the width in the query and streams back the PNG.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the client goes away
+     */
+    private void handleCarve(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.incrementAndGet();
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                fail(exchange, 405, "Use POST with the image as the body");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI());
+            int targetWidth;
+            int targetHeight;
+            CarveMode requestMode;
+            try {
+                if (!query.containsKey("width") && !query.containsKey("height")) {
+                    throw new IllegalArgumentException("width or height is required");
+                }
+                // 0 stands for the size of the image, which is only known once it is decoded
+                targetWidth = Integer.parseInt(query.getOrDefault("width", "0"));
+                targetHeight = Integer.parseInt(query.getOrDefault("height", "0"));
+                if ((query.containsKey("width") && targetWidth < 1) || (query.containsKey("height") && targetHeight < 1)) {
+                    throw new IllegalArgumentException("width and height must be at least 1");
+                }
+                requestMode = query.containsKey("mode") ? CarveMode.forName(query.get("mode")) : mode;
+            } catch (IllegalArgumentException e) {
+                fail(exchange, 400, e instanceof NumberFormatException ? "width and height must be numbers"
+                        : e.getMessage());
+                return;
+            }
+
+            Future<BufferedImage> job;
+            try {
+                job = workers.submit(() -> carve(exchange, targetWidth, targetHeight, requestMode));
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "Too many requests queued");
+                return;
+            }
+
+            BufferedImage result;
+            try {
+                result = job.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                // some exceptions, e.g. a NullPointerException, carry no message of their own
+                fail(exchange, cause instanceof IllegalArgumentException ? 400 : 500,
+                        cause.getMessage() != null ? cause.getMessage() : cause.toString());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(exchange, 500, "Interrupted");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            // length 0 means chunked: the PNG is sent as it is encoded
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                ImageIO.write(result, "png", body);
+            }
+            recordLatency(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Decodes the request body and carves it, on a worker thread.
+     *
+     * @param exchange     the request
+     * @param targetWidth  the width to carve the image to, or 0 to keep it
+     * @param targetHeight the height to carve the image to, or 0 to keep it
+     * @param mode         how to find the seams
+     * @return the carved image
+     * @throws IOException if the body cannot be read
+     */
+    private BufferedImage carve(HttpExchange exchange, int targetWidth, int targetHeight, CarveMode mode)
+            throws IOException {
+        inFlight.incrementAndGet();
+        try {
+            BufferedImage decoded = ImageIO.read(exchange.getRequestBody());
+            if (decoded == null) {
+                throw new IllegalArgumentException("The body is not an image");
+            }
+            Image image = new Image(decoded);
+            CarveCache carveCache = cache;
+            if (carveCache != null && targetHeight == 0 && targetWidth > 0 && targetWidth < image.getWidth()) {
+                return carveCache.carveToWidth(CarveCache.keyOf(image, image.getCostFunction().name()), image, targetWidth, mode);
+            }
+            image.carveToSize(targetWidth == 0 ? image.getWidth() : targetWidth,
+                    targetHeight == 0 ? image.getHeight() : targetHeight, mode);
+            return image.toBufferedImage();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reports the counters, the queue and the latency percentiles as {@code name value} lines.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the client goes away
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            StringBuilder text = new StringBuilder();
+            text.append("requests ").append(requests.get()).append('\n');
+            text.append("rejected ").append(rejected.get()).append('\n');
+            text.append("failed ").append(failed.get()).append('\n');
+            text.append("in_flight ").append(inFlight.get()).append('\n');
+            text.append("queued ").append(workers.getQueue().size()).append('\n');
+            long[] sorted = recentLatencies();
+            text.append("completed ").append(latencyCountSnapshot()).append('\n');
+            for (double quantile : new double[]{0.5, 0.9, 0.99, 1.0}) {
+                long nanos = sorted.length == 0 ? 0
+                        : sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+                text.append(quantile == 1.0 ? "latency_max_ms " : "latency_p" + Math.round(quantile * 100) + "_ms ")
+                        .append(String.format("%.1f", nanos / 1e6)).append('\n');
+            }
+            CarveCache carveCache = cache;
+            if (carveCache != null) {
+                carveCache.counters().forEach((name, value) -> text.append(name).append(' ').append(value).append('\n'));
+            }
+            // the per-phase numbers of the engine, in the Prometheus text format
+            PrometheusReporter phases = new PrometheusReporter();
+            CarveMetrics.DEFAULT.report(phases);
+            text.append(phases.getText());
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            send(exchange, 200, text.toString());
+        }
+    }
+
+    /**
+     * Records the latency of a successful request.
+     *
+     * @param nanos the time from receiving the request to sending the last byte
+     */
+    private synchronized void recordLatency(long nanos) {
+        latencies[(int) (latencyCount++ % LATENCY_WINDOW)] = nanos;
+    }
+
+    /**
+     * Retrieves the number of successful requests.
+     *
+     * @return the number of latencies recorded
+     */
+    private synchronized long latencyCountSnapshot() {
+        return latencyCount;
+    }
+
+    /**
+     * Copies and sorts the latencies in the window.
+     *
+     * @return the recent latencies in nanoseconds, in increasing order
+     */
+    private synchronized long[] recentLatencies() {
+        long[] recent = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_WINDOW));
+        Arrays.sort(recent);
+        return recent;
+    }
+
+    /**
+     * Answers with an error and counts it as failed.
+     *
+     * @param exchange the request and its response
+     * @param status   the HTTP status
+     * @param message  the explanation sent as the body
+     * @throws IOException if the client goes away
+     */
+    private void fail(HttpExchange exchange, int status, String message) throws IOException {
+        failed.incrementAndGet();
+        send(exchange, status, message);
+    }
+
+    /**
+     * Sends a short text response.
+     *
+     * @param exchange the request and its response
+     * @param status   the HTTP status
+     * @param message  the body
+     * @throws IOException if the client goes away
+     */
+    private static void send(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Reads {@code name=value} pairs from the query of a URI.
+     *
+     * @param uri the request URI
+     * @return the value of every parameter, by name
+     */
+    static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        if (uri.getQuery() != null) {
+            for (String pair : uri.getQuery().split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    query.put(pair.substring(0, equals), pair.substring(equals + 1));
+                }
+            }
+        }
+        return query;
+    }
+}
@@ -0,0 +1,113 @@
+package uk.ac.nulondon;
+
+import java.util.List;
+
+/**
+ * The cost of removing every pixel of a row, which seams are chosen to minimise.
+ * Implementations read the rows of {@link Image} as they are stored: packed RGB rows
+ * and padded fixed-point luminance rows, with all-zero rows standing in above the first
+ * row and below the last, so a pixel outside the image counts as black.
+ * A cost may only depend on the 3x3 neighborhood of its pixel, so the energy map can be
+ * patched around a removed seam instead of recomputed. Every cost function feeds the same
+ * seam solvers; none of them needs its own search.
+ * <p>
+ * A cost function can also charge for the step a vertical seam takes between two rows,
+ * through {@link #fillSteps}: the solvers add the step cost of each parent when choosing
+ * the cheapest one. Horizontal seams are only found for cost functions without step costs.
+ */
+public interface CostFunction {
+
+    /**
+     * The Sobel gradient of the luminance, the default.
+     */
+    CostFunction SOBEL = new SobelCost();
+
+    /**
+     * The dual-gradient energy of the color channels.
+     */
+    CostFunction DUAL_GRADIENT = new DualGradientCost();
+
+    /**
+     * The forward energy: the edges removing a pixel creates, rather than the ones it removes.
+     */
+    CostFunction FORWARD = new ForwardEnergyCost();
+
+    /**
+     * The lack of blue, so the cheapest seam is the bluest one.
+     */
+    CostFunction BLUENESS = new BluenessCost();
+
+    /**
+     * Every cost function, in the order they are listed to users.
+     */
+    List<CostFunction> ALL = List.of(SOBEL, DUAL_GRADIENT, FORWARD, BLUENESS);
+
+    /**
+     * Computes the cost of the pixels {@code from} to {@code to - 1} of a row.
+     *
+     * @param rgbUp    the packed RGB values of the row above, all zeros for the first row
+     * @param rgb      the packed RGB values of the row
+     * @param rgbDown  the packed RGB values of the row below, all zeros for the last row
+     * @param lumaUp   the padded luminance of the row above, all zeros for the first row
+     * @param luma     the padded luminance of the row
+     * @param lumaDown the padded luminance of the row below, all zeros for the last row
+     * @param width    the number of live pixels
+     * @param from     the first column to fill
+     * @param to       one past the last column to fill
+     * @param out      receives the cost of every pixel in the range, unpadded
+     */
+    void fill(int[] rgbUp, int[] rgb, int[] rgbDown, short[] lumaUp, short[] luma, short[] lumaDown,
+              int width, int from, int to, double[] out);
+
+    /**
+     * Tells whether reaching a pixel diagonally from the row above costs more than its pixel cost.
+     *
+     * @return true if {@link #fillSteps} has to be called
+     */
+    default boolean hasStepCosts() {
+        return false;
+    }
+
+    /**
+     * Computes the extra cost of reaching the pixels {@code from} to {@code to - 1} of a row from
+     * the pixel up-left and from the pixel up-right; reaching a pixel from straight above costs
+     * nothing extra. Only called if {@link #hasStepCosts()} is true.
+     *
+     * @param rgbUp  the packed RGB values of the row above, all zeros for the first row
+     * @param rgb    the packed RGB values of the row
+     * @param lumaUp the padded luminance of the row above, all zeros for the first row
+     * @param luma   the padded luminance of the row
+     * @param width  the number of live pixels
+     * @param from   the first column to fill
+     * @param to     one past the last column to fill
+     * @param left   receives the extra cost of coming from up-left, unpadded
+     * @param right  receives the extra cost of coming from up-right, unpadded
+     */
+    default void fillSteps(int[] rgbUp, int[] rgb, short[] lumaUp, short[] luma, int width, int from, int to,
+                           double[] left, double[] right) {
+        throw new UnsupportedOperationException(name() + " has no step costs");
+    }
+
+    /**
+     * Retrieves the name of the cost function, as given on the command line.
+     *
+     * @return the name of the cost function
+     */
+    String name();
+
+    /**
+     * Looks a cost function up by name.
+     *
+     * @param name the name, e.g. {@code sobel}
+     * @return the cost function
+     */
+    static CostFunction forName(String name) {
+        for (CostFunction cost : ALL) {
+            if (cost.name().equalsIgnoreCase(name)) {
+                return cost;
+            }
+        }
+        throw new IllegalArgumentException("Unknown energy function " + name
+                + ", expected sobel, dual-gradient, forward or blueness");
+    }
+}
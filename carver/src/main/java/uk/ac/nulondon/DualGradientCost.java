@@ -0,0 +1,38 @@
+package uk.ac.nulondon;
+
+/**
+ * The dual-gradient energy: the square root of the summed squared differences of the red,
+ * green and blue channels between the left and right neighbors and between the ones above
+ * and below. Unlike {@link SobelCost} it tells apart colors of the same brightness.
+ */
+public class DualGradientCost implements CostFunction {
+
+    @Override
+    public void fill(int[] rgbUp, int[] rgb, int[] rgbDown, short[] lumaUp, short[] luma, short[] lumaDown,
+                     int width, int from, int to, double[] out) {
+        for (int col = from; col < to; col++) {
+            int left = col > 0 ? rgb[col - 1] : 0;
+            int right = col + 1 < width ? rgb[col + 1] : 0;
+            out[col] = Math.sqrt(squaredDifference(left, right) + squaredDifference(rgbUp[col], rgbDown[col]));
+        }
+    }
+
+    /**
+     * Adds up the squared differences of the channels of two packed RGB values.
+     *
+     * @param a the first packed RGB value
+     * @param b the second packed RGB value
+     * @return the squared color distance
+     */
+    static int squaredDifference(int a, int b) {
+        int red = ((a >> 16) & 0xFF) - ((b >> 16) & 0xFF);
+        int green = ((a >> 8) & 0xFF) - ((b >> 8) & 0xFF);
+        int blue = (a & 0xFF) - (b & 0xFF);
+        return red * red + green * green + blue * blue;
+    }
+
+    @Override
+    public String name() {
+        return "dual-gradient";
+    }
+}
@@ -0,0 +1,114 @@
+package uk.ac.nulondon;
+
+/**
+ * Records what one operation changed in an image, so it can be undone without a snapshot.
+ * A removal keeps the removed seams and the pixels that were in them; a highlight keeps
+ * the seam and the colors it painted over; an insertion keeps only the seams it added.
+ * Undoing splices those values back, or takes the added seams out, in O(H) per seam.
+ */
+public class Edit {
+
+    /**
+     * The operation that made this edit.
+     */
+    private final Operation operation;
+
+    /**
+     * The seams the operation touched, in the order it applied them.
+     */
+    private final int[][] seams;
+
+    /**
+     * For every seam, the packed RGB values that were there before the operation.
+     */
+    private final int[][] colors;
+
+    /**
+     * Constructs an edit.
+     *
+     * @param operation the operation that made the edit
+     * @param seams     the seams touched, in the order they were applied
+     * @param colors    for every seam, the packed RGB values it held before the operation
+     */
+    public Edit(Operation operation, int[][] seams, int[][] colors) {
+        this.operation = operation;
+        this.seams = seams;
+        this.colors = colors;
+    }
+
+    /**
+     * Constructs an edit that touched a single seam.
+     *
+     * @param operation the operation that made the edit
+     * @param seam      the seam touched
+     * @param colors    the packed RGB values the seam held before the operation
+     */
+    public Edit(Operation operation, int[] seam, int[] colors) {
+        this(operation, new int[][]{seam}, new int[][]{colors});
+    }
+
+    /**
+     * Reads the colors of a seam, to record them before it is changed.
+     *
+     * @param image the image to read from
+     * @param seam  the column of the seam in every row
+     * @return the packed RGB value of the seam in every row
+     */
+    public static int[] colorsOf(Image image, int[] seam) {
+        int[] colors = new int[seam.length];
+        for (int row = 0; row < seam.length; row++) {
+            colors[row] = image.getRGB(row, seam[row]);
+        }
+        return colors;
+    }
+
+    /**
+     * Retrieves the operation that made this edit.
+     *
+     * @return the operation
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Retrieves the number of seams this edit touched.
+     *
+     * @return the number of seams
+     */
+    public int getSeamCount() {
+        return seams.length;
+    }
+
+    /**
+     * Reverts this edit on the image, seams in reverse order.
+     *
+     * @param image the image the edit was made on, in the state right after it
+     */
+    public void undo(Image image) {
+        for (int i = seams.length - 1; i >= 0; i--) {
+            if (operation == Operation.DELETE) {
+                image.insertSeam(seams[i], colors[i]);
+            } else if (operation == Operation.INSERT) {
+                image.removeSeam(seams[i]);
+            } else {
+                for (int row = 0; row < seams[i].length; row++) {
+                    image.setRGB(row, seams[i][row], colors[i][row]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates the memory this edit holds on to.
+     *
+     * @return the approximate size in bytes
+     */
+    public long bytes() {
+        long bytes = 16;
+        for (int i = 0; i < seams.length; i++) {
+            bytes += 32 + 4L * seams[i].length + 4L * colors[i].length;
+        }
+        return bytes;
+    }
+}
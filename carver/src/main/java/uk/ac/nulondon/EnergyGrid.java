@@ -1,9 +1,5 @@
 package uk.ac.nulondon;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-
 /**
  * Class to represent the energy grid from our
  * Project 2 assessment brief.
@@ -14,14 +10,28 @@ public class EnergyGrid {
     int width;
     int height;
 
+    // scratch rows and back pointers for getSeam, kept between calls and reallocated only when the size changes
+    private double[] previousRow;
+    private double[] currentRow;
+    private byte[][] backPointers;
+
     public EnergyGrid() {
         // you can play around with different arrays and values here
-        this.energyGrid = new int[][]{
+        this(new int[][]{
                 new int[]{5, 6, 3, 8},
                 new int[]{4, 1, 6, 4},
                 new int[]{3, 2, 1, 3},
                 new int[]{8, 6, 5, 2}
-        };
+        });
+    }
+
+    /**
+     * Creates an energy grid from the given values
+     *
+     * @param energyGrid the energy of every cell, indexed as {@code energyGrid[row][col]}
+     */
+    public EnergyGrid(int[][] energyGrid) {
+        this.energyGrid = energyGrid;
         this.height = this.energyGrid.length;
         this.width = this.energyGrid[0].length;
     }
@@ -43,87 +53,76 @@ public class EnergyGrid {
         }
     }
 
-    /**
-     * Add an element to a collection
-     */
-    private static <T> List<T> concat(T element, Collection<? extends T> elements) {
-        List<T> result = new ArrayList<>();
-        result.add(element);
-        result.addAll(elements);
-        return result;
-    }
-
     /**
      * Method that calculates the lowest energy seam
-     * for this energy grid
+     * for this energy grid. The cost rows and back pointers
+     * are reused between calls, so a grid must not be searched
+     * from several threads at once.
+     *
+     * @return the column of the seam in every row, from top to bottom
      */
-    public List<Pair> getSeam() {
-        double[] previousValues = new double[width]; // the row above's values
-        double[] currentValues = new double[width];  // current row's values
-        List<List<Pair>> previousSeams = new ArrayList<>(); // seam values from last iteration
-        List<List<Pair>> currentSeams = new ArrayList<>(); // seam values with this row's iteration
-        Pair currentPixel = new Pair(0, 0);
-
-        int col = 0;
+    public int[] getSeam() {
+        if (backPointers == null || backPointers.length != height || previousRow.length != width) {
+            previousRow = new double[width];
+            currentRow = new double[width];
+            backPointers = new byte[height][width];
+        }
+        double[] previousValues = previousRow; // the row above's values
+        double[] currentValues = currentRow;   // current row's values
+        byte[][] backPointers = this.backPointers; // offset of the best cell in the row above
 
         // initializing for first row
-        while (col < width) {
+        for (int col = 0; col < width; col++) {
             previousValues[col] = energyGrid[0][col];
-
-            // one seam per column
-            previousSeams.add(concat(currentPixel, List.of()));
-            col++;
-            currentPixel = new Pair(currentPixel.row, currentPixel.col + 1);
         }
 
-        // compute values and paths for each row
+        // compute values and back pointers for each row
         for (int row = 1; row < height; row++) {
-            col = 0;
-            currentPixel = new Pair(row, col);
-            while (col < width) {
+            for (int col = 0; col < width; col++) {
                 double bestSoFar = previousValues[col];
-                int ref = col;
+                byte ref = 0;
                 // check both adjacent pixels
                 // if left exists and is better, update
                 if (col > 0 && previousValues[col - 1] < bestSoFar) {
                     bestSoFar = previousValues[col - 1];
-                    ref = col - 1;
+                    ref = -1;
                 }
                 // if right exists and is better, update
                 if (col < width - 1 && previousValues[col + 1] < bestSoFar) {
                     bestSoFar = previousValues[col + 1];
-                    ref = col + 1;
+                    ref = 1;
                 }
 
                 // update the value with the current pixel
-                currentValues[col] = bestSoFar + energyGrid[currentPixel.row][currentPixel.col];
-
-                // append this new pixel to existing seams
-                currentSeams.add(concat(currentPixel, previousSeams.get(ref)));
+                currentValues[col] = bestSoFar + energyGrid[row][col];
 
-                col++;
-                // move to neighbor
-                currentPixel = new Pair(currentPixel.row, currentPixel.col + 1);
+                // remember where the best seam into this pixel came from
+                backPointers[row][col] = ref;
             }
 
-            // update previous values/seams
-            // and reset current values/seams
+            // swap previous/current values so the rows are reused
+            double[] swap = previousValues;
             previousValues = currentValues;
-            currentValues = new double[width];
-            previousSeams = currentSeams;
-            currentSeams = new ArrayList<>();
+            currentValues = swap;
         }
 
-        // find the seam with the max sum
+        // find the seam with the min sum
         double minValue = previousValues[0];
         int minIndex = 0;
-        for (int i = 1; i < 4; i++) {
+        for (int i = 1; i < width; i++) {
             if (previousValues[i] < minValue) {
                 minIndex = i;
                 minValue = previousValues[i];
             }
         }
-        return previousSeams.get(minIndex);
+
+        // follow the back pointers up to the first row
+        int[] seam = new int[height];
+        seam[height - 1] = minIndex;
+        for (int row = height - 1; row > 0; row--) {
+            seam[row - 1] = seam[row] + backPointers[row][seam[row]];
+        }
+        return seam;
     }
 
     /**
@@ -132,8 +131,8 @@ public class EnergyGrid {
      */
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for(int i=0; i < 4; i++) {
-            for (int j=0; j < 4; j++) {
+        for(int i=0; i < height; i++) {
+            for (int j=0; j < width; j++) {
                 sb.append(energyGrid[i][j]);
                 sb.append(" ");
             }
@@ -146,9 +145,9 @@ public class EnergyGrid {
         EnergyGrid eg = new EnergyGrid();
         System.out.println(eg);
 
-        List<Pair> seam = eg.getSeam();
-        for (Pair p : seam.reversed()) {
-            System.out.println(p);
+        int[] seam = eg.getSeam();
+        for (int row = 0; row < seam.length; row++) {
+            System.out.println(new Pair(row, seam[row]));
         }
     }
 }
@@ -0,0 +1,44 @@
+package uk.ac.nulondon;
+
+/**
+ * Forward energy, as in Rubinstein, Shamir and Avidan: the luminance difference across the
+ * edges that removing a pixel creates, rather than across the ones it removes.
+ * Removing pixel {@code (i, j)} always makes its left and right neighbors adjacent, which
+ * costs {@code C_U = |L(i, j+1) - L(i, j-1)|}; that is the pixel cost. A seam reaching the
+ * pixel from up-left also puts {@code L(i-1, j)} next to {@code L(i, j-1)}, and one reaching
+ * it from up-right puts it next to {@code L(i, j+1)}; those are the step costs, so the seam
+ * solvers compute {@code C_L} and {@code C_R} as the pixel cost plus the step.
+ * This keeps seams out of regions where removal would join very different pixels, which
+ * backward energies such as {@link SobelCost} do not see.
+ */
+public class ForwardEnergyCost implements CostFunction {
+
+    @Override
+    public void fill(int[] rgbUp, int[] rgb, int[] rgbDown, short[] lumaUp, short[] luma, short[] lumaDown,
+                     int width, int from, int to, double[] out) {
+        for (int col = from; col < to; col++) {
+            // the padded luminance of this pixel is at col + 1
+            out[col] = Math.abs(luma[col + 2] - luma[col]);
+        }
+    }
+
+    @Override
+    public boolean hasStepCosts() {
+        return true;
+    }
+
+    @Override
+    public void fillSteps(int[] rgbUp, int[] rgb, short[] lumaUp, short[] luma, int width, int from, int to,
+                          double[] left, double[] right) {
+        for (int col = from; col < to; col++) {
+            int above = lumaUp[col + 1];
+            left[col] = Math.abs(above - luma[col]);
+            right[col] = Math.abs(above - luma[col + 2]);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "forward";
+    }
+}
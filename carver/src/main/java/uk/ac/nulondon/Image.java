@@ -0,0 +1,1292 @@
+package uk.ac.nulondon;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+/**
+ * Represents an image consisting of pixels.
+ * Pixels are stored as packed RGB ints, one array per row. Removing a seam
+ * compacts each row in place, so a row array keeps its original capacity and
+ * only the first {@link #getWidth()} entries of it are live. Removing a horizontal
+ * seam shifts the pixels below it up one row on the same storage, so only the
+ * first {@link #getHeight()} rows are live.
+ */
+public class Image {
+
+    /**
+     * The packed RGB values of the image, indexed as {@code pixels[row][col]}.
+     */
+    private final int[][] pixels;
+
+    /**
+     * The number of live pixels in every row.
+     */
+    private int width;
+
+    /**
+     * The number of live rows.
+     */
+    private int height;
+
+    /**
+     * The luminance of every pixel as the fixed-point sum {@code red + green + blue},
+     * which is three times {@link Pixel#getBrightness()}. Each row is padded with a
+     * zero on both sides, so the luminance of {@code pixels[row][col]} is at
+     * {@code luma[row][col + 1]} and the neighbors of the edge pixels read as black.
+     */
+    private final short[][] luma;
+
+    /**
+     * An all-zero padded luminance row, standing in for the rows above and below the image.
+     */
+    private short[] blankRow;
+
+    /**
+     * An all-zero pixel row, standing in for the rows above and below the image.
+     */
+    private int[] blankPixels;
+
+    /**
+     * The cost the energy map holds and seams minimise.
+     */
+    private CostFunction costFunction = CostFunction.SOBEL;
+
+    /**
+     * The extra cost of reaching every pixel from up-left and from up-right, laid out like
+     * {@link #energy}, for a cost function with {@link CostFunction#hasStepCosts() step costs}.
+     * Built and patched together with the energy map, and only valid while it is.
+     */
+    private double[][] leftSteps;
+    private double[][] rightSteps;
+
+    /**
+     * The cost map {@link #getSeam(CostFunction)} fills, and its step costs, kept between calls.
+     */
+    private double[][] scratchCost = new double[0][];
+    private double[][] scratchLeftSteps = new double[0][];
+    private double[][] scratchRightSteps = new double[0][];
+
+    /**
+     * In fast mode, one search takes at most the current width divided by this many seams.
+     */
+    static final int FAST_SEAMS_PER_PASS = 8;
+
+    /**
+     * The cached energy of every pixel under the cost function, laid out like {@link #pixels}.
+     * Built on first use and patched after every edit rather than recomputed.
+     */
+    private double[][] energy;
+
+    /**
+     * The number of energy cells computed since the image was created.
+     */
+    private long energyRecomputed;
+
+    /**
+     * The number of rows in each stripe of a parallel energy pass.
+     */
+    private static final int ENERGY_STRIPE_ROWS = 16;
+
+    /**
+     * The image size, in pixels, from which a full energy pass runs in parallel.
+     */
+    private static final long PARALLEL_ENERGY_PIXELS = 1 << 18;
+
+    /**
+     * The number of energy cells carried over unchanged across seam removals.
+     */
+    private long energyReused;
+
+    /**
+     * The solver used to find seams, kept so its buffers are reused between seams.
+     */
+    private SeamSolver solver = new SeamSolver();
+
+    /**
+     * The solver that keeps its cost table between seams, or null if incremental seams are off.
+     */
+    private IncrementalSeamSolver incrementalSolver;
+
+    /**
+     * The number of levels, each half the size of the one below, {@link #getApproximateSeam()} builds:
+     * the coarsest seam is solved at 1/8 scale.
+     */
+    static final int PYRAMID_LEVELS = 3;
+
+    /**
+     * The default number of columns either side of the coarse path that every pyramid level searches.
+     */
+    public static final int DEFAULT_PYRAMID_BAND = 16;
+
+    /**
+     * The luminance pyramid of {@link #getApproximateSeam()}, or null until it is needed.
+     * Removing single seams keeps it; any other edit drops it.
+     */
+    private SeamPyramid pyramid;
+
+    /**
+     * The number of columns either side of the coarse path that every pyramid level searches.
+     */
+    private int pyramidBand = DEFAULT_PYRAMID_BAND;
+
+    /**
+     * Retrieves the height of the image.
+     *
+     * @return the height of the image
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Constructs an Image object from a BufferedImage.
+     * Each pixel of the BufferedImage is packed into an int and stored row by row.
+     *
+     * @param oldImg the BufferedImage to be converted into an Image object
+     */
+    public Image(BufferedImage oldImg) {
+        pixels = new int[oldImg.getHeight()][oldImg.getWidth()];
+        luma = new short[oldImg.getHeight()][oldImg.getWidth() + 2];
+        blankRow = new short[oldImg.getWidth() + 2];
+        blankPixels = new int[oldImg.getWidth()];
+        width = oldImg.getWidth();
+        height = oldImg.getHeight();
+
+        // copy the packed pixels row by row, converting the image once if it is not stored as ints
+        BufferedImage source = intRaster(oldImg) ? oldImg : toIntArgb(oldImg);
+        SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) source.getSampleModel();
+        DataBufferInt buffer = (DataBufferInt) source.getRaster().getDataBuffer();
+        int[] data = buffer.getData();
+        int stride = model.getScanlineStride();
+        int offset = buffer.getOffset() - source.getRaster().getSampleModelTranslateY() * stride
+                - source.getRaster().getSampleModelTranslateX();
+        for (int y = 0; y < oldImg.getHeight(); y++) {
+            int[] row = pixels[y];
+            short[] lumaRow = luma[y];
+            int start = offset + y * stride;
+            for (int x = 0; x < width; x++) {
+                // drop the alpha channel, the image is exported as RGB
+                row[x] = data[start + x] & 0xFFFFFF;
+                lumaRow[x + 1] = lumaOf(row[x]);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the pixels of an image are stored as one packed RGB int each,
+     * so they can be copied without going through its color model.
+     *
+     * @param image the image to check
+     * @return true for {@code TYPE_INT_RGB} and {@code TYPE_INT_ARGB} images backed by an int buffer
+     */
+    static boolean intRaster(BufferedImage image) {
+        return (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && image.getSampleModel() instanceof SinglePixelPackedSampleModel;
+    }
+
+    /**
+     * Converts an image to {@code TYPE_INT_ARGB} in one pass, keeping the colors
+     * {@link BufferedImage#getRGB(int, int)} would return.
+     * The byte layouts decoders usually produce are copied with a native blit;
+     * anything else goes through the color model in one bulk call.
+     *
+     * @param image the image to convert
+     * @return a copy of the image stored as packed ARGB ints
+     */
+    static BufferedImage toIntArgb(BufferedImage image) {
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        if (image.getType() == BufferedImage.TYPE_3BYTE_BGR || image.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
+            Graphics2D graphics = converted.createGraphics();
+            // copy the pixels as they are instead of blending them onto the empty image
+            graphics.setComposite(AlphaComposite.Src);
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+        } else {
+            int[] data = ((DataBufferInt) converted.getRaster().getDataBuffer()).getData();
+            image.getRGB(0, 0, image.getWidth(), image.getHeight(), data, 0, image.getWidth());
+        }
+        return converted;
+    }
+
+    /**
+     * Computes the fixed-point luminance of a packed RGB value.
+     *
+     * @param rgb the packed RGB value
+     * @return the sum of the red, green and blue components
+     */
+    static short lumaOf(int rgb) {
+        return (short) (((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF));
+    }
+
+    /**
+     * Retrieves the padded luminance of a row, or a blank row outside the image.
+     *
+     * @param row the row
+     * @return the padded luminance of the row
+     */
+    private short[] lumaRow(int row) {
+        return row < 0 || row >= getHeight() ? blankRow : luma[row];
+    }
+
+    /**
+     * Retrieves the packed RGB values of a row, or a blank row outside the image.
+     *
+     * @param row the row
+     * @return the packed RGB values of the row
+     */
+    private int[] pixelRow(int row) {
+        return row < 0 || row >= getHeight() ? blankPixels : pixels[row];
+    }
+
+    /**
+     * Retrieves the width of the image.
+     *
+     * @return the width of the image
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Retrieves the packed RGB value of the pixel at the given position.
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return the packed RGB value
+     */
+    public int getRGB(int row, int col) {
+        return pixels[row][col];
+    }
+
+    /**
+     * Overwrites the packed RGB value of the pixel at the given position.
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @param rgb the new packed RGB value
+     */
+    public void setRGB(int row, int col, int rgb) {
+        pixels[row][col] = rgb & 0xFFFFFF;
+        luma[row][col + 1] = lumaOf(rgb);
+        pyramid = null;
+        if (energy != null) {
+            // the brightness change shows up in the energy of every neighbor
+            int from = Math.max(0, col - 1);
+            int to = Math.min(width, col + 2);
+            int recomputed = 0;
+            for (int r = Math.max(0, row - 1); r <= Math.min(getHeight() - 1, row + 1); r++) {
+                refreshCost(r, from, to);
+                recomputed += to - from;
+            }
+            energyRecomputed += recomputed;
+            energyReused += (long) width * getHeight() - recomputed;
+        }
+        if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+    }
+
+    /**
+     * Retrieves the pixel at the given position.
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return a pixel holding the position and color, or null if the position is outside the image
+     */
+    public Pixel getPixel(int row, int col) {
+        if (row < 0 || row >= getHeight() || col < 0 || col >= width) {
+            return null;
+        }
+        return new Pixel(new Color(pixels[row][col]), row, col);
+    }
+
+    /**
+     * Removes one pixel from every row, shifting the rest of the row to the left.
+     * If the energy map has been built, it is shifted the same way and only the
+     * pixels whose neighborhood touched the seam are recomputed.
+     *
+     * @param seam the column to remove from each row, from top to bottom
+     */
+    public void removeSeam(int[] seam) {
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_REMOVAL);
+        for (int row = 0; row < getHeight(); row++) {
+            int col = seam[row];
+            System.arraycopy(pixels[row], col + 1, pixels[row], col, width - col - 1);
+            System.arraycopy(luma[row], col + 2, luma[row], col + 1, width - col - 1);
+            // the old last pixel now sits in the padding
+            luma[row][width] = 0;
+            if (energy != null) {
+                System.arraycopy(energy[row], col + 1, energy[row], col, width - col - 1);
+                if (hasSteps()) {
+                    System.arraycopy(leftSteps[row], col + 1, leftSteps[row], col, width - col - 1);
+                    System.arraycopy(rightSteps[row], col + 1, rightSteps[row], col, width - col - 1);
+                }
+            }
+        }
+        width--;
+        if (energy != null) {
+            int[] changedLow = new int[getHeight()];
+            int[] changedHigh = new int[getHeight()];
+            refreshEnergy(seam, changedLow, changedHigh);
+            if (incrementalSolver != null) {
+                incrementalSolver.seamRemoved(energy, stepsOrNull(leftSteps), stepsOrNull(rightSteps), seam,
+                        changedLow, changedHigh, width, getHeight());
+            }
+        } else if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+        timer.stop(width + 1, getHeight(), getHeight(), 1);
+    }
+
+    /**
+     * Inserts one pixel into every row, shifting the rest of the row to the right.
+     * This is the inverse of {@link #removeSeam(int[])}: inserting a removed seam with
+     * its old colors restores the image. Rows grow if they are already full.
+     *
+     * @param seam the column each new pixel ends up at, from top to bottom
+     * @param rgb  the packed RGB value of the new pixel in every row
+     */
+    public void insertSeam(int[] seam, int[] rgb) {
+        ensureCapacity(width + 1);
+        pyramid = null;
+        for (int row = 0; row < getHeight(); row++) {
+            int col = seam[row];
+            System.arraycopy(pixels[row], col, pixels[row], col + 1, width - col);
+            pixels[row][col] = rgb[row] & 0xFFFFFF;
+            System.arraycopy(luma[row], col + 1, luma[row], col + 2, width - col);
+            luma[row][col + 1] = lumaOf(rgb[row]);
+            if (energy != null) {
+                System.arraycopy(energy[row], col, energy[row], col + 1, width - col);
+                if (hasSteps()) {
+                    System.arraycopy(leftSteps[row], col, leftSteps[row], col + 1, width - col);
+                    System.arraycopy(rightSteps[row], col, rightSteps[row], col + 1, width - col);
+                }
+            }
+        }
+        width++;
+        if (energy != null) {
+            for (int row = 0; row < getHeight(); row++) {
+                int low = seam[Math.max(0, row - 1)];
+                int high = low;
+                for (int r = Math.max(0, row - 1); r <= Math.min(getHeight() - 1, row + 1); r++) {
+                    low = Math.min(low, seam[r]);
+                    high = Math.max(high, seam[r]);
+                }
+                int from = Math.max(0, low - 1);
+                int to = Math.min(width, high + 2);
+                refreshCost(row, from, to);
+                int recomputed = Math.max(0, to - from);
+                energyRecomputed += recomputed;
+                energyReused += width - recomputed;
+            }
+        }
+        if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+    }
+
+    /**
+     * Duplicates several non-crossing seams at once, widening every row in a single pass.
+     * A new pixel is placed to the right of every seam pixel, colored as the average of that
+     * pixel and its right neighbor. Rows are shifted right to left in place, growing only
+     * when they are full, so no copy of the image is made per seam.
+     * The energy map is rebuilt on the next use.
+     *
+     * @param seams the seams to duplicate, as returned by {@link #getSeams(int)}
+     * @return the columns of the new pixels, one seam per inserted seam from left to right;
+     *         removing them right to left restores the image
+     */
+    public int[][] insertSeams(int[][] seams) {
+        int count = seams.length;
+        int[][] inserted = new int[count][height];
+        if (count == 0) {
+            return inserted;
+        }
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_INSERTION);
+        ensureCapacity(width + count);
+        int[] cols = new int[count];
+        for (int row = 0; row < height; row++) {
+            for (int i = 0; i < count; i++) {
+                cols[i] = seams[i][row];
+            }
+            Arrays.sort(cols);
+            int[] pixelRow = pixels[row];
+            // the part right of the last seam moves furthest, so shift from the right
+            int end = width;
+            for (int i = count - 1; i >= 0; i--) {
+                int col = cols[i];
+                int right = col + 1 < width ? pixelRow[col + 1] : pixelRow[col];
+                System.arraycopy(pixelRow, col + 1, pixelRow, col + i + 2, end - col - 1);
+                pixelRow[col + i + 1] = average(pixelRow[col], right);
+                inserted[i][row] = col + i + 1;
+                end = col + 1;
+            }
+            short[] lumaRow = luma[row];
+            for (int col = cols[0]; col < width + count; col++) {
+                lumaRow[col + 1] = lumaOf(pixelRow[col]);
+            }
+        }
+        width += count;
+        energy = null;
+        pyramid = null;
+        if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+        timer.stop(width, height, (long) count * height, count);
+        return inserted;
+    }
+
+    /**
+     * Averages two packed RGB values channel by channel, rounding down.
+     *
+     * @param a the first packed RGB value
+     * @param b the second packed RGB value
+     * @return the packed RGB average
+     */
+    static int average(int a, int b) {
+        // halve each channel before adding, so no channel carries into the next
+        return ((a & 0xFEFEFE) >> 1) + ((b & 0xFEFEFE) >> 1) + (a & b & 0x010101);
+    }
+
+    /**
+     * Grows every row so it can hold at least {@code capacity} pixels.
+     *
+     * @param capacity the number of pixels every row must be able to hold
+     */
+    private void ensureCapacity(int capacity) {
+        if (getHeight() == 0 || pixels[0].length >= capacity) {
+            return;
+        }
+        int grown = Math.max(capacity, pixels[0].length + pixels[0].length / 2);
+        for (int row = 0; row < getHeight(); row++) {
+            pixels[row] = Arrays.copyOf(pixels[row], grown);
+            luma[row] = Arrays.copyOf(luma[row], grown + 2);
+            if (energy != null) {
+                energy[row] = Arrays.copyOf(energy[row], grown);
+            }
+            if (leftSteps != null && row < leftSteps.length) {
+                leftSteps[row] = Arrays.copyOf(leftSteps[row], grown);
+                rightSteps[row] = Arrays.copyOf(rightSteps[row], grown);
+            }
+        }
+        blankRow = new short[grown + 2];
+        blankPixels = new int[grown];
+    }
+
+    /**
+     * Removes seams until the image is {@code targetWidth} pixels wide, without keeping any history.
+     * {@link CarveMode#EXACT} keeps the cost table between seams and removes the same seams as
+     * repeated {@link #getSeam()}; {@link CarveMode#FAST} removes batches of non-crossing seams;
+     * {@link CarveMode#PYRAMID} removes the seams {@link #getApproximateSeam()} finds.
+     *
+     * @param targetWidth the width to carve the image down to
+     * @param mode        how to find the seams
+     */
+    public void carveToWidth(int targetWidth, CarveMode mode) {
+        if (targetWidth < 1 || targetWidth > width) {
+            throw new IllegalArgumentException("Cannot carve an image " + width + " pixels wide to " + targetWidth);
+        }
+        if (mode == CarveMode.EXACT) {
+            boolean incremental = incrementalSolver != null;
+            setIncrementalSeams(true);
+            while (width > targetWidth) {
+                removeSeam(getSeam());
+            }
+            setIncrementalSeams(incremental);
+        } else if (mode == CarveMode.PYRAMID) {
+            while (width > targetWidth) {
+                removeSeam(getApproximateSeam());
+            }
+        } else {
+            while (width > targetWidth) {
+                removeSeams(getSeams(Math.min(width - targetWidth, Math.max(1, width / FAST_SEAMS_PER_PASS))));
+            }
+        }
+    }
+
+    /**
+     * Removes vertical and horizontal seams until the image is {@code targetWidth} by
+     * {@code targetHeight} pixels, without keeping any history.
+     * While both dimensions have seams left, the cheapest seam of each direction is found and
+     * the one with the lower total energy is removed, the greedy form of the transport-map order.
+     * {@link CarveMode#FAST} makes the same choice between a batch of vertical and a batch of
+     * horizontal seams, comparing the first seam of each. {@link CarveMode#PYRAMID} finds the
+     * vertical seams with {@link #getApproximateSeam()} and the horizontal ones exactly.
+     *
+     * @param targetWidth  the width to carve the image down to
+     * @param targetHeight the height to carve the image down to
+     * @param mode         how to find the seams
+     */
+    public void carveToSize(int targetWidth, int targetHeight, CarveMode mode) {
+        if (targetWidth < 1 || targetWidth > width) {
+            throw new IllegalArgumentException("Cannot carve an image " + width + " pixels wide to " + targetWidth);
+        }
+        if (targetHeight < 1 || targetHeight > height) {
+            throw new IllegalArgumentException("Cannot carve an image " + height + " pixels high to " + targetHeight);
+        }
+        if (targetHeight == height) {
+            carveToWidth(targetWidth, mode);
+            return;
+        }
+        if (hasSteps()) {
+            throw new IllegalArgumentException("The " + costFunction.name() + " cost only carves the width");
+        }
+        boolean incremental = incrementalSolver != null;
+        if (mode == CarveMode.EXACT) {
+            setIncrementalSeams(true);
+        }
+        while (width > targetWidth || height > targetHeight) {
+            if (mode != CarveMode.FAST) {
+                int[] vertical = width <= targetWidth ? null
+                        : mode == CarveMode.PYRAMID ? getApproximateSeam() : getSeam();
+                int[] horizontal = height > targetHeight ? getHorizontalSeam() : null;
+                if (horizontal == null || (vertical != null && seamCost(vertical) <= horizontalSeamCost(horizontal))) {
+                    removeSeam(vertical);
+                } else {
+                    removeHorizontalSeam(horizontal);
+                }
+            } else {
+                int[][] vertical = width > targetWidth
+                        ? getSeams(Math.min(width - targetWidth, Math.max(1, width / FAST_SEAMS_PER_PASS))) : null;
+                int[][] horizontal = height > targetHeight
+                        ? getHorizontalSeams(Math.min(height - targetHeight, Math.max(1, height / FAST_SEAMS_PER_PASS)))
+                        : null;
+                if (horizontal == null
+                        || (vertical != null && seamCost(vertical[0]) <= horizontalSeamCost(horizontal[0]))) {
+                    removeSeams(vertical);
+                } else {
+                    removeHorizontalSeams(horizontal);
+                }
+            }
+        }
+        setIncrementalSeams(incremental);
+    }
+
+    /**
+     * Adds up the energy along a vertical seam.
+     *
+     * @param seam the column of the seam in every row
+     * @return the total energy of the seam
+     */
+    double seamCost(int[] seam) {
+        double[][] energyMap = energyMap();
+        double cost = 0;
+        for (int row = 0; row < height; row++) {
+            cost += energyMap[row][seam[row]];
+        }
+        return cost;
+    }
+
+    /**
+     * Adds up the energy along a horizontal seam.
+     *
+     * @param seam the row of the seam in every column
+     * @return the total energy of the seam
+     */
+    private double horizontalSeamCost(int[] seam) {
+        double[][] energyMap = energyMap();
+        double cost = 0;
+        for (int col = 0; col < width; col++) {
+            cost += energyMap[seam[col]][col];
+        }
+        return cost;
+    }
+
+    /**
+     * Removes one pixel from every column, shifting the pixels below it up one row.
+     * The rows are walked top to bottom from the highest point of the seam, so every
+     * row is read and written sequentially. If the energy map has been built, it is
+     * shifted the same way and only the pixels whose neighborhood touched the seam are recomputed.
+     *
+     * @param seam the row to remove from each column, from left to right
+     */
+    public void removeHorizontalSeam(int[] seam) {
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_REMOVAL);
+        int top = height - 1;
+        for (int col = 0; col < width; col++) {
+            top = Math.min(top, seam[col]);
+        }
+        for (int row = top; row < height - 1; row++) {
+            int[] pixelRow = pixels[row];
+            int[] pixelsBelow = pixels[row + 1];
+            short[] lumaRow = luma[row];
+            short[] lumaBelow = luma[row + 1];
+            double[] energyRow = energy != null ? energy[row] : null;
+            double[] energyBelow = energy != null ? energy[row + 1] : null;
+            boolean steps = energy != null && hasSteps();
+            for (int col = 0; col < width; col++) {
+                if (seam[col] <= row) {
+                    pixelRow[col] = pixelsBelow[col];
+                    lumaRow[col + 1] = lumaBelow[col + 1];
+                    if (energyRow != null) {
+                        energyRow[col] = energyBelow[col];
+                    }
+                    if (steps) {
+                        leftSteps[row][col] = leftSteps[row + 1][col];
+                        rightSteps[row][col] = rightSteps[row + 1][col];
+                    }
+                }
+            }
+        }
+        height--;
+        pyramid = null;
+        if (energy != null) {
+            refreshEnergyAcross(seam);
+        }
+        if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+        timer.stop(width, height + 1, width, 1);
+    }
+
+    /**
+     * Removes several horizontal seams at once, compacting every column in a single top-to-bottom pass.
+     * The seams must not share a pixel. The energy map is rebuilt on the next use.
+     *
+     * @param seams the seams to remove, each holding the row to remove from every column
+     */
+    public void removeHorizontalSeams(int[][] seams) {
+        if (seams.length == 0) {
+            return;
+        }
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_REMOVAL);
+        int count = seams.length;
+        // the removed rows of every column, in increasing order
+        int[][] removed = new int[width][count];
+        int top = height;
+        for (int col = 0; col < width; col++) {
+            for (int i = 0; i < count; i++) {
+                removed[col][i] = seams[i][col];
+            }
+            Arrays.sort(removed[col]);
+            top = Math.min(top, removed[col][0]);
+        }
+        // for every column, the next row to read and how many of its removed rows have been passed
+        int[] source = new int[width];
+        int[] passed = new int[width];
+        Arrays.fill(source, top);
+        for (int row = top; row < height - count; row++) {
+            int[] pixelRow = pixels[row];
+            short[] lumaRow = luma[row];
+            for (int col = 0; col < width; col++) {
+                int from = source[col];
+                while (passed[col] < count && removed[col][passed[col]] == from) {
+                    from++;
+                    passed[col]++;
+                }
+                // from is never above row, so the pixel read has not been overwritten yet
+                pixelRow[col] = pixels[from][col];
+                lumaRow[col + 1] = luma[from][col + 1];
+                source[col] = from + 1;
+            }
+        }
+        height -= count;
+        energy = null;
+        pyramid = null;
+        if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+        timer.stop(width, height + count, (long) count * width, count);
+    }
+
+    /**
+     * Removes several seams at once, compacting every row in a single pass.
+     * The seams must not share a pixel. The energy map is rebuilt on the next use.
+     *
+     * @param seams the seams to remove, each holding the column to remove from every row
+     */
+    public void removeSeams(int[][] seams) {
+        if (seams.length == 0) {
+            return;
+        }
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_REMOVAL);
+        int[] cols = new int[seams.length];
+        for (int row = 0; row < getHeight(); row++) {
+            for (int i = 0; i < seams.length; i++) {
+                cols[i] = seams[i][row];
+            }
+            Arrays.sort(cols);
+            int[] pixelRow = pixels[row];
+            int write = cols[0];
+            for (int i = 0; i < cols.length; i++) {
+                int next = i + 1 < cols.length ? cols[i + 1] : width;
+                int length = next - cols[i] - 1;
+                System.arraycopy(pixelRow, cols[i] + 1, pixelRow, write, length);
+                write += length;
+            }
+            short[] lumaRow = luma[row];
+            for (int col = cols[0]; col < write; col++) {
+                lumaRow[col + 1] = lumaOf(pixelRow[col]);
+            }
+            Arrays.fill(lumaRow, write + 1, width + 2, (short) 0);
+        }
+        width -= seams.length;
+        energy = null;
+        pyramid = null;
+        if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+        timer.stop(width + seams.length, getHeight(), (long) seams.length * getHeight(), seams.length);
+    }
+
+    /**
+     * Recomputes the energies invalidated by removing a seam.
+     * A pixel's energy can only change if the seam passed through its 3x3 neighborhood,
+     * so in every row only the columns between the seam positions of that row and
+     * the rows above and below (widened by one on the left) are recomputed.
+     *
+     * @param seam        the column removed from each row
+     * @param changedLow  receives the first recomputed column of each row
+     * @param changedHigh receives the last recomputed column of each row
+     */
+    private void refreshEnergy(int[] seam, int[] changedLow, int[] changedHigh) {
+        for (int row = 0; row < getHeight(); row++) {
+            int low = seam[row];
+            int high = seam[row];
+            if (row > 0) {
+                low = Math.min(low, seam[row - 1]);
+                high = Math.max(high, seam[row - 1]);
+            }
+            if (row < getHeight() - 1) {
+                low = Math.min(low, seam[row + 1]);
+                high = Math.max(high, seam[row + 1]);
+            }
+            low = Math.max(0, low - 1);
+            high = Math.min(width - 1, high);
+            refreshCost(row, low, high + 1);
+            changedLow[row] = low;
+            changedHigh[row] = high;
+            int recomputed = Math.max(0, high - low + 1);
+            energyRecomputed += recomputed;
+            energyReused += width - recomputed;
+        }
+    }
+
+    /**
+     * Recomputes the energies invalidated by removing a horizontal seam, the way
+     * {@link #refreshEnergy} does for a vertical one with rows and columns swapped.
+     *
+     * @param seam the row removed from each column
+     */
+    private void refreshEnergyAcross(int[] seam) {
+        for (int col = 0; col < width; col++) {
+            int low = seam[col];
+            int high = seam[col];
+            if (col > 0) {
+                low = Math.min(low, seam[col - 1]);
+                high = Math.max(high, seam[col - 1]);
+            }
+            if (col < width - 1) {
+                low = Math.min(low, seam[col + 1]);
+                high = Math.max(high, seam[col + 1]);
+            }
+            low = Math.max(0, low - 1);
+            high = Math.min(height - 1, high);
+            for (int row = low; row <= high; row++) {
+                refreshCost(row, col, col + 1);
+            }
+            int recomputed = Math.max(0, high - low + 1);
+            energyRecomputed += recomputed;
+            energyReused += height - recomputed;
+        }
+    }
+
+    /**
+     * Retrieves the energy map, building it on first use.
+     *
+     * @return the energy of every pixel, indexed as {@code energy[row][col]}
+     */
+    private double[][] energyMap() {
+        if (energy == null) {
+            computeEnergyMap();
+        }
+        return energy;
+    }
+
+    /**
+     * Computes the energy of every pixel from scratch and caches the result.
+     * The rows are split into stripes of {@link #ENERGY_STRIPE_ROWS} that are filled in
+     * parallel on the common fork/join pool; small images are filled on the calling thread.
+     *
+     * @return the energy of every pixel, indexed as {@code energy[row][col]}
+     */
+    public double[][] computeEnergyMap() {
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.ENERGY);
+        allocateEnergy();
+        int stripes = (getHeight() + ENERGY_STRIPE_ROWS - 1) / ENERGY_STRIPE_ROWS;
+        IntStream range = IntStream.range(0, stripes);
+        if ((long) width * getHeight() >= PARALLEL_ENERGY_PIXELS) {
+            range = range.parallel();
+        }
+        range.forEach(stripe -> computeEnergyRows(stripe * ENERGY_STRIPE_ROWS,
+                Math.min(getHeight(), (stripe + 1) * ENERGY_STRIPE_ROWS)));
+        energyRecomputed += (long) width * getHeight();
+        if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+        timer.stop(width, getHeight(), (long) width * getHeight(), 0);
+        return energy;
+    }
+
+    /**
+     * Replaces the energy map with one computed earlier for the same pixels, for example by a
+     * {@link CarveCache}. The values are copied, so the map passed in is never modified.
+     *
+     * @param map the energy of every pixel, indexed as {@code map[row][col]}
+     */
+    void setEnergyMap(double[][] map) {
+        if (map.length != height || (height > 0 && map[0].length < width)) {
+            throw new IllegalArgumentException("The energy map does not match a " + width + "x" + height + " image");
+        }
+        allocateEnergy();
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(map[row], 0, energy[row], 0, width);
+            if (hasSteps()) {
+                // the map only holds the pixel costs
+                costFunction.fillSteps(pixelRow(row - 1), pixels[row], lumaRow(row - 1), luma[row], width, 0, width,
+                        leftSteps[row], rightSteps[row]);
+            }
+        }
+        if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+    }
+
+    /**
+     * Fills the energy map for a range of rows with the {@link #setCostFunction(CostFunction) cost function}.
+     *
+     * @param from the first row to fill
+     * @param to   one past the last row to fill
+     */
+    void computeEnergyRows(int from, int to) {
+        for (int row = from; row < to; row++) {
+            refreshCost(row, 0, width);
+        }
+    }
+
+    /**
+     * Allocates the energy map, and the step costs if the cost function has them, unless they already exist.
+     */
+    private void allocateEnergy() {
+        int capacity = pixels.length > 0 ? pixels[0].length : 0;
+        if (energy == null) {
+            energy = new double[getHeight()][capacity];
+        }
+        if (hasSteps() && (leftSteps == null || leftSteps.length < getHeight())) {
+            leftSteps = new double[getHeight()][capacity];
+            rightSteps = new double[getHeight()][capacity];
+        }
+    }
+
+    /**
+     * Recomputes the energy, and the step costs if there are any, of a range of pixels of a row.
+     *
+     * @param row  the row
+     * @param from the first column to fill
+     * @param to   one past the last column to fill
+     */
+    private void refreshCost(int row, int from, int to) {
+        fillCost(energy, costFunction, row, from, to);
+        if (hasSteps()) {
+            costFunction.fillSteps(pixelRow(row - 1), pixels[row], lumaRow(row - 1), luma[row], width, from, to,
+                    leftSteps[row], rightSteps[row]);
+        }
+    }
+
+    /**
+     * Tells whether the cost function charges for diagonal steps.
+     *
+     * @return true if the step cost maps are in use
+     */
+    private boolean hasSteps() {
+        return costFunction.hasStepCosts();
+    }
+
+    /**
+     * Retrieves a step cost map for a seam search.
+     *
+     * @param steps the step cost map
+     * @return the map, or null if the cost function has no step costs
+     */
+    private double[][] stepsOrNull(double[][] steps) {
+        return hasSteps() ? steps : null;
+    }
+
+    /**
+     * Computes the cost of a range of pixels of a row into a map.
+     *
+     * @param map  the map to fill, laid out like {@link #pixels}
+     * @param cost the cost function
+     * @param row  the row
+     * @param from the first column to fill
+     * @param to   one past the last column to fill
+     */
+    private void fillCost(double[][] map, CostFunction cost, int row, int from, int to) {
+        cost.fill(pixelRow(row - 1), pixels[row], pixelRow(row + 1), lumaRow(row - 1), luma[row], lumaRow(row + 1),
+                width, from, to, map[row]);
+    }
+
+    /**
+     * Sets the cost the energy map holds and seams minimise. The energy map is rebuilt on the next use.
+     *
+     * @param cost the cost function, {@link CostFunction#SOBEL} by default
+     */
+    public void setCostFunction(CostFunction cost) {
+        if (cost == costFunction) {
+            return;
+        }
+        costFunction = cost;
+        energy = null;
+        if (!cost.hasStepCosts()) {
+            leftSteps = null;
+            rightSteps = null;
+        }
+        if (incrementalSolver != null) {
+            incrementalSolver.invalidate();
+        }
+    }
+
+    /**
+     * Retrieves the cost the energy map holds and seams minimise.
+     *
+     * @return the cost function
+     */
+    public CostFunction getCostFunction() {
+        return costFunction;
+    }
+
+    /**
+     * Retrieves how many energy cells have been computed, including the initial full pass.
+     *
+     * @return the number of recomputed energy cells
+     */
+    public long getEnergyRecomputed() {
+        return energyRecomputed;
+    }
+
+    /**
+     * Retrieves how many energy cells were kept from the cache across seam removals, seam
+     * insertions and pixel edits.
+     *
+     * @return the number of reused energy cells
+     */
+    public long getEnergyReused() {
+        return energyReused;
+    }
+
+    /**
+     * Finds and returns a seam with the lowest energy.
+     *
+     * @return the column of the seam in every row, from top to bottom
+     */
+    public int[] getSeam() {
+        double[][] energyMap = energyMap();
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_SEARCH);
+        int[] seam = incrementalSolver != null
+                ? incrementalSolver.findSeam(energyMap, stepsOrNull(leftSteps), stepsOrNull(rightSteps), width, getHeight())
+                : solver.findSeam(energyMap, stepsOrNull(leftSteps), stepsOrNull(rightSteps), width, getHeight());
+        timer.stop(width, getHeight(), (long) width * getHeight(), 1);
+        return seam;
+    }
+
+    /**
+     * Finds the seam with the lowest total of another cost than the one the energy map holds,
+     * for example the bluest seam with {@link CostFunction#BLUENESS}. The cost of every pixel is
+     * computed into a scratch map kept between calls; the energy map is left as it is.
+     *
+     * @param cost the cost to minimise
+     * @return the column of the seam in every row, from top to bottom
+     */
+    public int[] getSeam(CostFunction cost) {
+        if (cost == costFunction) {
+            return getSeam();
+        }
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.ENERGY);
+        scratchCost = ensureScratch(scratchCost);
+        boolean steps = cost.hasStepCosts();
+        if (steps) {
+            scratchLeftSteps = ensureScratch(scratchLeftSteps);
+            scratchRightSteps = ensureScratch(scratchRightSteps);
+        }
+        for (int row = 0; row < height; row++) {
+            fillCost(scratchCost, cost, row, 0, width);
+            if (steps) {
+                cost.fillSteps(pixelRow(row - 1), pixels[row], lumaRow(row - 1), luma[row], width, 0, width,
+                        scratchLeftSteps[row], scratchRightSteps[row]);
+            }
+        }
+        timer.stop(width, height, (long) width * height, 0);
+        timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_SEARCH);
+        int[] seam = solver.findSeam(scratchCost, steps ? scratchLeftSteps : null, steps ? scratchRightSteps : null,
+                width, height);
+        timer.stop(width, height, (long) width * height, 1);
+        return seam;
+    }
+
+    /**
+     * Grows a scratch map so it covers the image, keeping it if it already does.
+     *
+     * @param scratch the scratch map
+     * @return a map with at least {@link #height} rows of at least {@link #width} cells
+     */
+    private double[][] ensureScratch(double[][] scratch) {
+        if (scratch.length >= height && (height == 0 || scratch[0].length >= width)) {
+            return scratch;
+        }
+        return new double[height][pixels.length > 0 ? pixels[0].length : width];
+    }
+
+    /**
+     * Finds up to {@code count} non-crossing low-energy seams from a single search.
+     *
+     * @param count the maximum number of seams to return
+     * @return the seams found, the first of which is the one {@link #getSeam()} returns
+     * @see SeamSolver#findSeams(double[][], int, int, int)
+     */
+    public int[][] getSeams(int count) {
+        double[][] energyMap = energyMap();
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_SEARCH);
+        int[][] seams = solver.findSeams(energyMap, stepsOrNull(leftSteps), stepsOrNull(rightSteps),
+                width, getHeight(), count);
+        timer.stop(width, getHeight(), (long) width * getHeight(), seams.length);
+        return seams;
+    }
+
+    /**
+     * Finds a low-energy seam from a luminance pyramid instead of the full-resolution table.
+     * The seam is solved at 1/8 scale and refined level by level within {@link #setPyramidBand(int) band}
+     * columns of the scaled-up path, so a search costs about 1/64 of {@link #getSeam()} plus
+     * the bands. The pyramid is built on first use and rebuilt after every eighth removed seam.
+     * The seam found may cost more energy than the one {@link #getSeam()} returns.
+     * The coarse levels are always searched on Sobel energy; the finest one reads the energy map.
+     *
+     * @return the column of the seam in every row, from top to bottom
+     * @see SeamPyramid
+     */
+    public int[] getApproximateSeam() {
+        double[][] energyMap = energyMap();
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_SEARCH);
+        if (pyramid == null || pyramid.isStale(width, height)) {
+            pyramid = new SeamPyramid(luma, width, height, PYRAMID_LEVELS);
+        }
+        int[] seam = pyramid.findSeam(energyMap, stepsOrNull(leftSteps), stepsOrNull(rightSteps), width, height,
+                pyramidBand);
+        timer.stop(width, height, (long) width * height, 1);
+        return seam;
+    }
+
+    /**
+     * Retrieves how many columns either side of the coarse path every pyramid level searches.
+     *
+     * @return the number of columns
+     */
+    public int getPyramidBand() {
+        return pyramidBand;
+    }
+
+    /**
+     * Sets how many columns either side of the coarse path every pyramid level searches.
+     * Wider bands find cheaper seams more often and cost more per seam.
+     *
+     * @param band the number of columns, at least 1
+     */
+    public void setPyramidBand(int band) {
+        if (band < 1) {
+            throw new IllegalArgumentException("The band must be at least 1 column, got " + band);
+        }
+        pyramidBand = band;
+    }
+
+    /**
+     * Finds and returns a horizontal seam with the lowest energy.
+     * Not available when the cost function has step costs, which only vertical seams take.
+     *
+     * @return the row of the seam in every column, from left to right
+     * @see SeamSolver#findHorizontalSeam(double[][], int, int)
+     */
+    public int[] getHorizontalSeam() {
+        requireNoSteps();
+        double[][] energyMap = energyMap();
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_SEARCH);
+        int[] seam = solver.findHorizontalSeam(energyMap, width, height);
+        timer.stop(width, height, (long) width * height, 1);
+        return seam;
+    }
+
+    /**
+     * Finds up to {@code count} non-crossing low-energy horizontal seams from a single search.
+     * Not available when the cost function has step costs, which only vertical seams take.
+     *
+     * @param count the maximum number of seams to return
+     * @return the seams found, the first of which is the one {@link #getHorizontalSeam()} returns
+     * @see SeamSolver#findHorizontalSeams(double[][], int, int, int)
+     */
+    public int[][] getHorizontalSeams(int count) {
+        requireNoSteps();
+        double[][] energyMap = energyMap();
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SEAM_SEARCH);
+        int[][] seams = solver.findHorizontalSeams(energyMap, width, height, count);
+        timer.stop(width, height, (long) width * height, seams.length);
+        return seams;
+    }
+
+    /**
+     * Fails if the cost function charges for diagonal steps, which are only defined for vertical seams.
+     */
+    private void requireNoSteps() {
+        if (hasSteps()) {
+            throw new IllegalStateException("The " + costFunction.name() + " cost only defines vertical seams");
+        }
+    }
+
+    /**
+     * Replaces the solver used by {@link #getSeam()} and {@link #getSeams(int)},
+     * for example with a {@link ParallelSeamSolver}.
+     *
+     * @param solver the solver to use
+     */
+    public void setSeamSolver(SeamSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Turns incremental seam search on or off.
+     * When on, the cumulative-cost table is kept between seams and only the part
+     * affected by each removal is recomputed. This costs an extra 9 bytes per pixel.
+     *
+     * @param enabled whether to keep the cost table between seams
+     */
+    public void setIncrementalSeams(boolean enabled) {
+        if (!enabled) {
+            incrementalSolver = null;
+        } else if (incrementalSolver == null) {
+            incrementalSolver = new IncrementalSeamSolver();
+        }
+    }
+
+    /**
+     * Computes the energy of a given pixel based on its neighboring pixels' brightness.
+     *
+     * @param pixel the pixel for which to compute energy
+     * @return the energy of the pixel
+     */
+    public double getEnergy(Pixel pixel) {
+        return energyAt(pixel.row, pixel.col);
+    }
+
+    /**
+     * Computes the energy of the pixel at the given position in constant time.
+     * Neighbors outside the image count as having zero brightness.
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return the energy of the pixel
+     */
+    public double energyAt(int row, int col) {
+        return energyFromLuma(lumaRow(row - 1), luma[row], lumaRow(row + 1), col);
+    }
+
+    /**
+     * Computes the Sobel energy of a pixel from padded luminance rows, in integer arithmetic.
+     * The gradients are taken on the fixed-point luminance and scaled back to brightness
+     * units once at the end, which agrees with {@link #referenceEnergyAt(int, int)}
+     * to within floating-point rounding.
+     *
+     * @param up     the padded luminance of the row above
+     * @param middle the padded luminance of the pixel's row
+     * @param down   the padded luminance of the row below
+     * @param col    the column of the pixel
+     * @return the energy of the pixel
+     */
+    static double energyFromLuma(short[] up, short[] middle, short[] down, int col) {
+        int horizontal = (up[col] + 2 * middle[col] + down[col]) - (up[col + 2] + 2 * middle[col + 2] + down[col + 2]);
+        int vertical = (up[col] + 2 * up[col + 1] + up[col + 2]) - (down[col] + 2 * down[col + 1] + down[col + 2]);
+        return Math.sqrt(horizontal * horizontal + vertical * vertical) / 3;
+    }
+
+    /**
+     * Computes the energy of a pixel the original way, from floating-point brightness.
+     * Only used to check the accuracy of {@link #energyAt(int, int)}.
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return the energy of the pixel
+     */
+    double referenceEnergyAt(int row, int col) {
+        double upLeft = brightnessAt(row - 1, col - 1);
+        double up = brightnessAt(row - 1, col);
+        double upRight = brightnessAt(row - 1, col + 1);
+        double left = brightnessAt(row, col - 1);
+        double right = brightnessAt(row, col + 1);
+        double downLeft = brightnessAt(row + 1, col - 1);
+        double down = brightnessAt(row + 1, col);
+        double downRight = brightnessAt(row + 1, col + 1);
+        return Math.sqrt(Math.pow(energyCalc(upLeft, left, downLeft, upRight, right, downRight), 2) +
+                Math.pow(energyCalc(upLeft, up, upRight, downLeft, down, downRight), 2));
+    }
+
+    /**
+     * Retrieves the brightness of the pixel at the given position.
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return the brightness of the pixel, or 0 if the position is outside the image
+     */
+    private double brightnessAt(int row, int col) {
+        if (row < 0 || row >= getHeight() || col < 0 || col >= width) {
+            return 0.0;
+        }
+        return Pixel.getBrightness(pixels[row][col]);
+    }
+
+    /**
+     * Calculates the energy of a pixel based on its neighboring pixels' brightness.
+     *
+     * @param A the pixel to the top-left
+     * @param D the pixel to the top
+     * @param G the pixel to the top-right
+     * @param C the pixel to the left
+     * @param F the pixel to the right
+     * @param I the pixel to the bottom-right
+     * @return the energy of the pixel
+     */
+    public double energyCalc(Pixel A, Pixel D, Pixel G, Pixel C, Pixel F, Pixel I) {
+        return energyCalc(A != null ? A.getBrightness(): 0.0, D != null ? D.getBrightness(): 0.0, G != null ? G.getBrightness(): 0.0,
+                C != null ? C.getBrightness(): 0.0, F != null ? F.getBrightness(): 0.0, I != null ? I.getBrightness(): 0.0);
+    }
+
+    /**
+     * Calculates one Sobel gradient from the brightness of six neighboring pixels.
+     *
+     * @param A the brightness of the first pixel on the positive side
+     * @param D the brightness of the middle pixel on the positive side
+     * @param G the brightness of the last pixel on the positive side
+     * @param C the brightness of the first pixel on the negative side
+     * @param F the brightness of the middle pixel on the negative side
+     * @param I the brightness of the last pixel on the negative side
+     * @return the gradient
+     */
+    static double energyCalc(double A, double D, double G, double C, double F, double I) {
+        return (A + 2 * D + G) - (C + 2 * F + I);
+    }
+
+    /**
+     * Converts the image represented by the object to a BufferedImage.
+     *
+     * @return the BufferedImage representing the image
+     */
+    public BufferedImage toBufferedImage() {
+        BufferedImage image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+        // a new TYPE_INT_RGB image stores its rows back to back, in the same packing as ours
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int row = 0; row < getHeight(); row++) {
+            System.arraycopy(pixels[row], 0, data, row * getWidth(), getWidth());
+        }
+        return image;
+    }
+
+}
@@ -0,0 +1,375 @@
+package uk.ac.nulondon;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Provides methods for image processing and manipulation.
+ */
+public class ImageProcessing {
+
+    /**
+     * The current image being processed.
+     */
+    private Image currentImage;
+
+    /**
+     * The edits made since the image was loaded, oldest first.
+     */
+    private final Deque<Edit> history = new ArrayDeque<>();
+
+    /**
+     * The approximate memory held by {@link #history}, in bytes.
+     */
+    private long historyBytes = 0;
+
+    /**
+     * The memory the history may hold before the oldest edits are dropped, in bytes.
+     */
+    private long maxHistoryBytes = DEFAULT_MAX_HISTORY_BYTES;
+
+    /**
+     * The default limit on the memory held by the edit history: 64 MB.
+     */
+    public static final long DEFAULT_MAX_HISTORY_BYTES = 64L << 20;
+
+    /**
+     * Writes exported images in the background.
+     */
+    private final AsyncExporter exporter = new AsyncExporter();
+
+    /**
+     * Whether images keep their seam cost table between removals.
+     */
+    private boolean incrementalSeams = false;
+
+    /**
+     * The cache energy maps are loaded from, or null to compute them every time.
+     */
+    private CarveCache cache;
+
+    /**
+     * Retrieves the current image.
+     *
+     * @return the current image
+     */
+    public Image getImage() {
+        return currentImage;
+    }
+
+    /**
+     * Turns incremental seam search on or off for the current image and any image loaded later.
+     *
+     * @param enabled whether to keep the seam cost table between removals
+     * @see Image#setIncrementalSeams(boolean)
+     */
+    public void setIncrementalSeams(boolean enabled) {
+        incrementalSeams = enabled;
+        if (currentImage != null) {
+            currentImage.setIncrementalSeams(enabled);
+        }
+    }
+
+    /**
+     * Exports the current image to a file with the specified file name.
+     * The pixels are copied right away and encoded on a background thread,
+     * so editing can carry on; call {@link #flush()} to wait for the file.
+     *
+     * @param fileName the name of the file to export the image to
+     */
+    public void exportImage(String fileName) {
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.SNAPSHOT);
+        BufferedImage snapshot = currentImage.toBufferedImage();
+        timer.stop(snapshot.getWidth(), snapshot.getHeight(), (long) snapshot.getWidth() * snapshot.getHeight(), 0);
+        exporter.export(fileName, snapshot);
+    }
+
+    /**
+     * Waits until every exported image has been written.
+     */
+    public void flush() {
+        exporter.flush();
+    }
+
+    /**
+     * Writes every exported image that is still queued and stops the background writer.
+     */
+    public void close() {
+        exporter.close();
+    }
+
+    /**
+     * Retrieves the exporter writing the images passed to {@link #exportImage(String)}.
+     *
+     * @return the exporter
+     */
+    public AsyncExporter getExporter() {
+        return exporter;
+    }
+
+    /**
+     * Highlights a seam in the image with the specified color.
+     *
+     * @param seam      the column of the seam in every row, from top to bottom
+     * @param color     the color to highlight the seam with
+     * @param operation the highlight recorded in the history, so undo knows which one it reverts
+     * @return the highlighted seam
+     */
+    public int[] highlightSeam(int[] seam, Color color, Operation operation) {
+        int[] previousColors = recordColors(seam);
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.HIGHLIGHT);
+        for (int row = 0; row < seam.length; row++) {
+            currentImage.setRGB(row, seam[row], color.getRGB());
+        }
+        timer.stop(currentImage.getWidth(), currentImage.getHeight(), seam.length, 1);
+        saveHistory(new Edit(operation, seam, previousColors));
+        return seam;
+    }
+
+    /**
+     * Removes a seam from the current image.
+     *
+     * @return the column of the removed seam in every row, from top to bottom
+     */
+    public int[] removeSeamEnergy() {
+        int[] seam = currentImage.getSeam();
+        int[] removed = recordColors(seam);
+        currentImage.removeSeam(seam);
+        saveHistory(new Edit(Operation.DELETE, seam, removed));
+        return seam;
+    }
+
+    /**
+     * Removes {@code k} seams from the current image in one call, without saving or exporting in between.
+     *
+     * @param k the number of seams to remove
+     */
+    public void removeSeams(int k) {
+        removeSeams(k, CarveMode.EXACT);
+    }
+
+    /**
+     * Removes {@code k} seams from the current image in one call, without saving or exporting in between.
+     * In {@link CarveMode#EXACT} mode the cost table is kept between removals, so the seams are the
+     * same as calling {@link #removeSeamEnergy()} k times. In {@link CarveMode#FAST} mode each search
+     * yields up to an eighth of the current width worth of non-crossing seams. In
+     * {@link CarveMode#PYRAMID} mode every seam comes from {@link Image#getApproximateSeam()}.
+     *
+     * @param k    the number of seams to remove
+     * @param mode how to find the seams
+     */
+    public void removeSeams(int k, CarveMode mode) {
+        if (k < 0 || k >= currentImage.getWidth()) {
+            throw new IllegalArgumentException("Cannot remove " + k + " seams from an image "
+                    + currentImage.getWidth() + " pixels wide");
+        }
+        // every seam is recorded as if it were removed on its own, so one undo reverts the whole call
+        List<int[]> seams = new ArrayList<>();
+        List<int[]> removed = new ArrayList<>();
+        if (mode != CarveMode.FAST) {
+            currentImage.setIncrementalSeams(mode == CarveMode.EXACT);
+            for (int i = 0; i < k; i++) {
+                int[] seam = mode == CarveMode.EXACT ? currentImage.getSeam() : currentImage.getApproximateSeam();
+                seams.add(seam);
+                removed.add(recordColors(seam));
+                currentImage.removeSeam(seam);
+            }
+            currentImage.setIncrementalSeams(incrementalSeams);
+        } else {
+            int remaining = k;
+            while (remaining > 0) {
+                int batch = Math.min(remaining, Math.max(1, currentImage.getWidth() / Image.FAST_SEAMS_PER_PASS));
+                int[][] pass = currentImage.getSeams(batch);
+                // the seams of a pass do not cross, so removing them right to left
+                // leaves the columns of the ones still to go unchanged
+                Arrays.sort(pass, Comparator.comparingInt(seam -> -seam[0]));
+                for (int[] seam : pass) {
+                    seams.add(seam);
+                    removed.add(recordColors(seam));
+                }
+                currentImage.removeSeams(pass);
+                remaining -= pass.length;
+            }
+        }
+        saveHistory(new Edit(Operation.DELETE, seams.toArray(new int[0][]), removed.toArray(new int[0][])));
+    }
+
+    /**
+     * Removes seams from the current image until it is {@code targetWidth} pixels wide.
+     *
+     * @param targetWidth the width to carve the image down to
+     */
+    public void carveToWidth(int targetWidth) {
+        carveToWidth(targetWidth, CarveMode.EXACT);
+    }
+
+    /**
+     * Removes seams from the current image until it is {@code targetWidth} pixels wide.
+     *
+     * @param targetWidth the width to carve the image down to
+     * @param mode        how to find the seams
+     */
+    public void carveToWidth(int targetWidth, CarveMode mode) {
+        if (targetWidth < 1 || targetWidth > currentImage.getWidth()) {
+            throw new IllegalArgumentException("Cannot carve an image " + currentImage.getWidth()
+                    + " pixels wide to " + targetWidth);
+        }
+        removeSeams(currentImage.getWidth() - targetWidth, mode);
+    }
+
+    /**
+     * Widens the current image by {@code k} seams, duplicating low-energy seams so the
+     * content is stretched where it is least noticed.
+     * Each round takes up to half the current width worth of non-crossing seams from a single
+     * search and inserts them all at once, so no seam is duplicated twice in one round.
+     * Only the positions of the new seams are kept for undo, O(k H) in all.
+     *
+     * @param k the number of seams to insert
+     */
+    public void insertSeams(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Cannot insert " + k + " seams");
+        }
+        List<int[]> inserted = new ArrayList<>();
+        int remaining = k;
+        while (remaining > 0) {
+            int[][] round = currentImage.getSeams(Math.min(remaining, Math.max(1, currentImage.getWidth() / 2)));
+            // recorded left to right, so undo takes them out right to left
+            inserted.addAll(Arrays.asList(currentImage.insertSeams(round)));
+            remaining -= round.length;
+        }
+        int[][] seams = inserted.toArray(new int[0][]);
+        saveHistory(new Edit(Operation.INSERT, seams, new int[seams.length][0]));
+    }
+
+    /**
+     * Inserts seams into the current image until it is {@code targetWidth} pixels wide.
+     *
+     * @param targetWidth the width to enlarge the image to
+     */
+    public void enlargeToWidth(int targetWidth) {
+        if (targetWidth <= currentImage.getWidth()) {
+            throw new IllegalArgumentException("Cannot enlarge an image " + currentImage.getWidth()
+                    + " pixels wide to " + targetWidth);
+        }
+        insertSeams(targetWidth - currentImage.getWidth());
+    }
+
+    /**
+     * Undoes the last operation performed on the image by splicing back what it changed.
+     * Does nothing if there is no edit left to undo.
+     */
+    public void undo() {
+        Edit edit = history.pollLast();
+        if (edit != null) {
+            CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.UNDO);
+            historyBytes -= edit.bytes();
+            edit.undo(currentImage);
+            timer.stop(currentImage.getWidth(), currentImage.getHeight(),
+                    (long) edit.getSeamCount() * currentImage.getHeight(), edit.getSeamCount());
+        }
+    }
+
+    /**
+     * Sets how much memory the edit history may hold; the oldest edits are dropped beyond it.
+     *
+     * @param maxBytes the limit in bytes
+     */
+    public void setMaxHistoryBytes(long maxBytes) {
+        maxHistoryBytes = maxBytes;
+        trimHistory();
+    }
+
+    /**
+     * Sets the cache that images loaded afterwards take their energy map from.
+     *
+     * @param cache the cache, or null to compute every energy map
+     */
+    public void setCache(CarveCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Loads an image from the specified file path.
+     *
+     * @param filePath the path of the image file to load
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public void load(String filePath) throws IOException {
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.DECODE);
+        File originalFile = new File(filePath);
+        BufferedImage img = ImageIO.read(originalFile);
+        currentImage = new Image((img));
+        currentImage.setIncrementalSeams(incrementalSeams);
+        clearHistory();
+        if (cache != null) {
+            cache.loadEnergy(CarveCache.keyOf(currentImage, currentImage.getCostFunction().name()), currentImage);
+        }
+        timer.stop(currentImage.getWidth(), currentImage.getHeight(),
+                (long) currentImage.getWidth() * currentImage.getHeight(), 0);
+    }
+    /**
+     * Saves the current image to the specified file path.
+     *
+     * @param filePath The path to save the image file.
+     * @throws IOException if an I/O error occurs while writing the file.
+     */
+    public void save(String filePath) throws IOException {
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.ENCODE);
+        BufferedImage img = currentImage.toBufferedImage();
+        ImageIO.write(img, "png", new File(filePath));
+        timer.stop(img.getWidth(), img.getHeight(), (long) img.getWidth() * img.getHeight(), 0);
+    }
+
+    /**
+     * Adds an edit to the history, dropping the oldest edits if it grows past its limit.
+     *
+     * @param edit the edit to record
+     */
+    private void saveHistory(Edit edit) {
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.HISTORY);
+        history.addLast(edit);
+        historyBytes += edit.bytes();
+        trimHistory();
+        timer.stop(currentImage.getWidth(), currentImage.getHeight(), 0, edit.getSeamCount());
+    }
+
+    /**
+     * Reads the colors of a seam before it is changed, so the change can be undone.
+     *
+     * @param seam the column of the seam in every row
+     * @return the packed RGB value of the seam in every row
+     */
+    private int[] recordColors(int[] seam) {
+        CarveMetrics.Timer timer = CarveMetrics.DEFAULT.start(CarvePhase.HISTORY);
+        int[] colors = Edit.colorsOf(currentImage, seam);
+        timer.stop(currentImage.getWidth(), currentImage.getHeight(), seam.length, 0);
+        return colors;
+    }
+
+    /**
+     * Drops the oldest edits until the history fits in its memory limit.
+     */
+    private void trimHistory() {
+        while (historyBytes > maxHistoryBytes && !history.isEmpty()) {
+            historyBytes -= history.pollFirst().bytes();
+        }
+    }
+
+    /**
+     * Clears the edit history.
+     */
+    private void clearHistory() {
+        history.clear();
+        historyBytes = 0;
+    }
+}
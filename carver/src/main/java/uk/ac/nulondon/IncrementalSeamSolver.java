@@ -0,0 +1,200 @@
+package uk.ac.nulondon;
+
+/**
+ * A seam solver that keeps the whole cumulative-cost table between seams.
+ * After a seam is removed, the table is shifted like the image and only the
+ * cells whose cost can have changed are recomputed: those whose own energy was
+ * refreshed, those whose three parents moved relative to each other because the
+ * seam switched columns between two rows, and those below a cell whose cost did
+ * change. Each row stops as soon as none of its recomputed values differ, so the
+ * work per seam follows the changed cone instead of the whole image.
+ * The seams it returns are the same as those of {@link SeamSolver}, with or without step costs;
+ * the step costs can only change where the energy was refreshed, so the same cells are recomputed.
+ */
+public class IncrementalSeamSolver {
+
+    /**
+     * The cumulative cost of every cell, laid out like the energy map.
+     */
+    private double[][] cost;
+
+    /**
+     * For every cell, the offset (-1, 0 or 1) of the cheapest cell in the row above.
+     */
+    private byte[][] backPointers;
+
+    /**
+     * Whether the table matches the current energy map.
+     */
+    private boolean valid;
+
+    /**
+     * The number of cost cells computed since the solver was created.
+     */
+    private long cellsRecomputed;
+
+    /**
+     * Finds the seam with the lowest total energy, filling the table first if needed.
+     *
+     * @param energy the energy of every pixel, indexed as {@code energy[row][col]}
+     * @param width  the number of live columns in every row
+     * @param height the number of rows
+     * @return the column of the seam in every row, from top to bottom
+     */
+    public int[] findSeam(double[][] energy, int width, int height) {
+        return findSeam(energy, null, null, width, height);
+    }
+
+    /**
+     * Finds the seam with the lowest total cost, counting step costs, filling the table first if needed.
+     *
+     * @param energy     the cost of every pixel, indexed as {@code energy[row][col]}
+     * @param leftSteps  the extra cost of reaching every cell from up-left, or null for none
+     * @param rightSteps the extra cost of reaching every cell from up-right, or null for none
+     * @param width      the number of live columns in every row
+     * @param height     the number of rows
+     * @return the column of the seam in every row, from top to bottom
+     * @see SeamSolver#findSeam(double[][], double[][], double[][], int, int)
+     */
+    public int[] findSeam(double[][] energy, double[][] leftSteps, double[][] rightSteps, int width, int height) {
+        if (!valid) {
+            fill(energy, leftSteps, rightSteps, width, height);
+        }
+        return SeamSolver.traceBack(backPointers, cost[height - 1], width, height);
+    }
+
+    /**
+     * Marks the table as stale, so the next seam is computed from scratch.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Updates the table after a seam has been removed from the image and the energy map.
+     *
+     * @param energy      the energy map, already shifted and refreshed
+     * @param seam        the column removed from each row
+     * @param changedLow  the first column of each row whose energy was recomputed
+     * @param changedHigh the last column of each row whose energy was recomputed
+     * @param width       the number of live columns after the removal
+     * @param height      the number of rows
+     */
+    public void seamRemoved(double[][] energy, int[] seam, int[] changedLow, int[] changedHigh, int width, int height) {
+        seamRemoved(energy, null, null, seam, changedLow, changedHigh, width, height);
+    }
+
+    /**
+     * Updates the table after a seam has been removed from the image, the energy map and the step costs.
+     *
+     * @param energy      the energy map, already shifted and refreshed
+     * @param leftSteps   the extra cost of reaching every cell from up-left, refreshed like the energy, or null
+     * @param rightSteps  the extra cost of reaching every cell from up-right, refreshed like the energy, or null
+     * @param seam        the column removed from each row
+     * @param changedLow  the first column of each row whose energy was recomputed
+     * @param changedHigh the last column of each row whose energy was recomputed
+     * @param width       the number of live columns after the removal
+     * @param height      the number of rows
+     */
+    public void seamRemoved(double[][] energy, double[][] leftSteps, double[][] rightSteps, int[] seam,
+                            int[] changedLow, int[] changedHigh, int width, int height) {
+        if (!valid) {
+            return;
+        }
+        // the table still has the old width, shift it like the image
+        for (int row = 0; row < height; row++) {
+            int col = seam[row];
+            System.arraycopy(cost[row], col + 1, cost[row], col, width - col);
+            System.arraycopy(backPointers[row], col + 1, backPointers[row], col, width - col);
+        }
+
+        // the first row has no parents, its cost is its energy
+        int propagatedLow = Integer.MAX_VALUE;
+        int propagatedHigh = Integer.MIN_VALUE;
+        for (int col = changedLow[0]; col <= changedHigh[0]; col++) {
+            cellsRecomputed++;
+            if (cost[0][col] != energy[0][col]) {
+                cost[0][col] = energy[0][col];
+                propagatedLow = Math.min(propagatedLow, col);
+                propagatedHigh = Math.max(propagatedHigh, col);
+            }
+        }
+
+        for (int row = 1; row < height; row++) {
+            // cells around the seam see a different set of parents
+            int low = Math.min(seam[row - 1], seam[row]) - 1;
+            int high = Math.max(seam[row - 1], seam[row]);
+            low = Math.min(low, changedLow[row]);
+            high = Math.max(high, changedHigh[row]);
+            if (propagatedLow <= propagatedHigh) {
+                low = Math.min(low, propagatedLow - 1);
+                high = Math.max(high, propagatedHigh + 1);
+            }
+            low = Math.max(0, low);
+            high = Math.min(width - 1, high);
+
+            double[] previous = cost[row - 1];
+            double[] current = cost[row];
+            double[] energyRow = energy[row];
+            double[] leftStep = SeamSolver.stepRow(leftSteps, row);
+            double[] rightStep = SeamSolver.stepRow(rightSteps, row);
+            byte[] pointers = backPointers[row];
+            propagatedLow = Integer.MAX_VALUE;
+            propagatedHigh = Integer.MIN_VALUE;
+            for (int col = low; col <= high; col++) {
+                byte ref = leftStep == null ? SeamSolver.bestParent(previous, col, width)
+                        : SeamSolver.bestParent(previous, leftStep, rightStep, col, width);
+                double value = previous[col + ref] + SeamSolver.stepCost(leftStep, rightStep, col, ref) + energyRow[col];
+                pointers[col] = ref;
+                if (value != current[col]) {
+                    current[col] = value;
+                    propagatedLow = Math.min(propagatedLow, col);
+                    propagatedHigh = Math.max(propagatedHigh, col);
+                }
+            }
+            cellsRecomputed += Math.max(0, high - low + 1);
+        }
+    }
+
+    /**
+     * Retrieves how many cost cells have been computed, including full passes.
+     *
+     * @return the number of recomputed cost cells
+     */
+    public long getCellsRecomputed() {
+        return cellsRecomputed;
+    }
+
+    /**
+     * Computes the whole table from the energy map.
+     *
+     * @param energy     the energy of every pixel
+     * @param leftSteps  the extra cost of reaching every cell from up-left, or null for none
+     * @param rightSteps the extra cost of reaching every cell from up-right, or null for none
+     * @param width      the number of live columns
+     * @param height     the number of rows
+     */
+    private void fill(double[][] energy, double[][] leftSteps, double[][] rightSteps, int width, int height) {
+        if (cost == null || cost.length < height || cost[0].length < width) {
+            cost = new double[height][width];
+            backPointers = new byte[height][width];
+        }
+        System.arraycopy(energy[0], 0, cost[0], 0, width);
+        for (int row = 1; row < height; row++) {
+            double[] previous = cost[row - 1];
+            double[] current = cost[row];
+            double[] energyRow = energy[row];
+            double[] leftStep = SeamSolver.stepRow(leftSteps, row);
+            double[] rightStep = SeamSolver.stepRow(rightSteps, row);
+            byte[] pointers = backPointers[row];
+            for (int col = 0; col < width; col++) {
+                byte ref = leftStep == null ? SeamSolver.bestParent(previous, col, width)
+                        : SeamSolver.bestParent(previous, leftStep, rightStep, col, width);
+                current[col] = previous[col + ref] + SeamSolver.stepCost(leftStep, rightStep, col, ref) + energyRow[col];
+                pointers[col] = ref;
+            }
+        }
+        cellsRecomputed += (long) width * height;
+        valid = true;
+    }
+}
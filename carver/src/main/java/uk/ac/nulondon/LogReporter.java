@@ -0,0 +1,36 @@
+package uk.ac.nulondon;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Prints one human-readable line per phase, for logs and the console.
+ */
+public class LogReporter implements MetricsReporter {
+
+    /**
+     * Where the lines are printed.
+     */
+    private final PrintStream out;
+
+    /**
+     * Constructs a reporter printing to the given stream.
+     *
+     * @param out where to print the lines
+     */
+    public LogReporter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void report(List<CarveMetrics.PhaseStats> phases) {
+        for (CarveMetrics.PhaseStats stats : phases) {
+            out.printf("%-12s count %d, total %.1f ms, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms,"
+                            + " %.1f MP/s, %d seams%n",
+                    stats.getPhase().name().toLowerCase(), stats.getCount(), stats.getTotalNanos() / 1e6,
+                    stats.getPercentile(0.5) / 1e6, stats.getPercentile(0.9) / 1e6,
+                    stats.getPercentile(0.99) / 1e6, stats.getMaxNanos() / 1e6,
+                    stats.getPixelsPerSecond() / 1e6, stats.getSeams());
+        }
+    }
+}
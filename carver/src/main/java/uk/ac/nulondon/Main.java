@@ -0,0 +1,389 @@
+package uk.ac.nulondon;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Headless entry point for carving images from scripts and job runners.
+ * <pre>
+ * java -jar carver.jar carve --in a.png --out b.png [--width 1200] [--height 800] [--energy sobel|dual-gradient|forward|blueness]
+ *                        [--mode exact|fast|pyramid]
+ * java -jar carver.jar carve --raw big.raw --width 20000 [--in big.png] [--out small.png]
+ * java -jar carver.jar batch --in images/ --out carved/ --width 1200 [--threads 4] [--memory-mb 2048] [--mode exact|fast|pyramid]
+ * java -jar carver.jar serve [--port 8080] [--threads 4] [--queue 16] [--mode exact|fast|pyramid]
+ * </pre>
+ * The image is carved in memory and written once; no intermediate files are produced.
+ * Given both a width and a height, vertical and horizontal seams are interleaved as
+ * {@link Image#carveToSize(int, int, CarveMode)} does.
+ * With {@code --raw}, a raw pixel file is carved in place through a {@link MappedImage} instead,
+ * after writing {@code --in} to it if given.
+ * A timing breakdown is printed on standard output, one {@code phase milliseconds} pair per line.
+ * Any command also takes {@code --metrics log|prometheus} to print the {@link CarveMetrics} of the run,
+ * and {@code --cache-mb n [--cache-dir dir]} to keep a {@link CarveCache} of energy maps and removal orders.
+ */
+public class Main {
+
+    /**
+     * How to call the program, printed when the arguments are wrong.
+     */
+    private static final String USAGE = "usage: carve --in <file> --out <file> [--width <pixels>]"
+            + " [--height <pixels>] [--energy sobel|dual-gradient|forward|blueness]\n"
+            + "       [--mode exact|fast|pyramid] [--metrics log|prometheus]"
+            + " [--cache-mb <n>] [--cache-dir <dir>]\n"
+            + "       carve --raw <file> --width <pixels> [--in <file>] [--out <file>]\n"
+            + "       batch --in <dir> --out <dir> --width <pixels> [--threads <n>] [--memory-mb <n>] [--mode exact|fast|pyramid]"
+            + " [--cache-mb <n>] [--cache-dir <dir>]\n"
+            + "       serve [--port <n>] [--threads <n>] [--queue <n>] [--mode exact|fast|pyramid]"
+            + " [--cache-mb <n>] [--cache-dir <dir>]";
+
+    /**
+     * The time spent decoding the input image, in nanoseconds.
+     */
+    private long loadNanos;
+
+    /**
+     * The time spent computing and updating the energy map, in nanoseconds.
+     */
+    private long energyNanos;
+
+    /**
+     * The time spent searching for seams, in nanoseconds.
+     */
+    private long searchNanos;
+
+    /**
+     * The time spent removing seams from the pixels, in nanoseconds.
+     */
+    private long removalNanos;
+
+    /**
+     * The time spent encoding and writing the output image, in nanoseconds.
+     */
+    private long encodeNanos;
+
+    /**
+     * Loads an image, carves it to the requested size and writes it.
+     *
+     * @param options the parsed command-line options
+     * @throws IOException if the image cannot be read or written
+     */
+    private void carve(Map<String, String> options) throws IOException {
+        if (options.containsKey("raw")) {
+            carveRaw(options);
+            return;
+        }
+        File in = new File(require(options, "in"));
+        File out = new File(require(options, "out"));
+        if (!options.containsKey("width") && !options.containsKey("height")) {
+            throw new IllegalArgumentException("Missing --width or --height");
+        }
+        CostFunction cost = CostFunction.forName(options.getOrDefault("energy", "sobel"));
+        CarveMode mode = CarveMode.forName(options.getOrDefault("mode", "exact"));
+
+        long start = System.nanoTime();
+        BufferedImage decoded = ImageIO.read(in);
+        if (decoded == null) {
+            throw new IOException("Cannot decode " + in);
+        }
+        Image image = new Image(decoded);
+        image.setCostFunction(cost);
+        loadNanos = System.nanoTime() - start;
+        int targetWidth = options.containsKey("width") ? parsePixels(options, "width") : image.getWidth();
+        int targetHeight = options.containsKey("height") ? parsePixels(options, "height") : image.getHeight();
+
+        // the engine times its own phases; patching the energy map and cost table counts as removal
+        long energyBefore = phaseNanos(CarvePhase.ENERGY);
+        long searchBefore = phaseNanos(CarvePhase.SEAM_SEARCH);
+        long removalBefore = phaseNanos(CarvePhase.SEAM_REMOVAL);
+        CarveCache cache = parseCache(options);
+        BufferedImage result;
+        if (cache != null && targetHeight == image.getHeight() && targetWidth < image.getWidth()) {
+            result = cache.carveToWidth(CarveCache.keyOf(image, cost.name()), image, targetWidth, mode);
+        } else {
+            image.carveToSize(targetWidth, targetHeight, mode);
+            result = image.toBufferedImage();
+        }
+        energyNanos = phaseNanos(CarvePhase.ENERGY) - energyBefore;
+        searchNanos = phaseNanos(CarvePhase.SEAM_SEARCH) - searchBefore;
+        removalNanos = phaseNanos(CarvePhase.SEAM_REMOVAL) - removalBefore;
+
+        write(result, out);
+        System.out.printf("carved %s to %dx%d in %s mode%n", in.getName(), result.getWidth(), result.getHeight(), mode);
+        if (cache != null) {
+            cache.counters().forEach((name, value) -> System.out.println(name + " " + value));
+        }
+    }
+
+    /**
+     * Carves a raw pixel file in place through a {@link MappedImage}, for images too large for
+     * the heap. Given {@code --in}, the image is decoded and written to the raw file first;
+     * given {@code --out}, the carved image is also encoded there.
+     *
+     * @param options the parsed command-line options
+     * @throws IOException if an image or the raw file cannot be read or written
+     */
+    private void carveRaw(Map<String, String> options) throws IOException {
+        for (String name : new String[]{"height", "energy", "mode", "cache-mb", "cache-dir"}) {
+            if (options.containsKey(name)) {
+                throw new IllegalArgumentException("--" + name + " cannot be used with --raw");
+            }
+        }
+        Path raw = Paths.get(options.get("raw"));
+        int targetWidth = parsePixels(options, "width");
+
+        long start = System.nanoTime();
+        MappedImage opened;
+        if (options.containsKey("in")) {
+            File in = new File(options.get("in"));
+            BufferedImage decoded = ImageIO.read(in);
+            if (decoded == null) {
+                throw new IOException("Cannot decode " + in);
+            }
+            opened = MappedImage.create(raw, decoded);
+        } else {
+            opened = MappedImage.open(raw);
+        }
+        loadNanos = System.nanoTime() - start;
+
+        try (MappedImage image = opened) {
+            // every pass removes one seam and searches for the next, so it all counts as removal
+            start = System.nanoTime();
+            image.carveToWidth(targetWidth);
+            removalNanos = System.nanoTime() - start;
+            if (options.containsKey("out")) {
+                write(image.toBufferedImage(), new File(options.get("out")));
+            }
+            System.out.printf("carved %s to %dx%d in place in %d passes%n", raw.getFileName(), image.getWidth(),
+                    image.getHeight(), image.getPasses());
+        }
+    }
+
+    /**
+     * Encodes an image in the format named by the extension of its file.
+     *
+     * @param result the image to write
+     * @param out    the file to write
+     * @throws IOException if the image cannot be written
+     */
+    private void write(BufferedImage result, File out) throws IOException {
+        long start = System.nanoTime();
+        String format = out.getName().substring(out.getName().lastIndexOf('.') + 1);
+        if (!ImageIO.write(result, format, out)) {
+            throw new IOException("No writer for the " + format + " format of " + out);
+        }
+        encodeNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Retrieves the total time the engine has spent in a phase so far.
+     *
+     * @param phase the phase
+     * @return the total time in nanoseconds
+     */
+    private static long phaseNanos(CarvePhase phase) {
+        for (CarveMetrics.PhaseStats stats : CarveMetrics.DEFAULT.snapshot()) {
+            if (stats.getPhase() == phase) {
+                return stats.getTotalNanos();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Carves every image of a directory with a {@link BatchCarver}.
+     *
+     * @param options the parsed command-line options
+     * @throws IOException if a directory cannot be listed or created
+     */
+    private static void batch(Map<String, String> options) throws IOException {
+        Path in = Paths.get(require(options, "in"));
+        Path out = Paths.get(require(options, "out"));
+        int targetWidth = parsePixels(options, "width");
+        int threads = options.containsKey("threads") ? parsePixels(options, "threads")
+                : Runtime.getRuntime().availableProcessors();
+        long memory = options.containsKey("memory-mb") ? parsePixels(options, "memory-mb") * (1L << 20)
+                : Runtime.getRuntime().maxMemory() / 2;
+        BatchCarver carver = new BatchCarver(threads, memory, CarveMode.forName(options.getOrDefault("mode", "exact")));
+        carver.setCache(parseCache(options));
+        try {
+            carver.run(in, out, targetWidth);
+        } finally {
+            carver.shutdown();
+        }
+    }
+
+    /**
+     * Runs a {@link CarveServer} until the program is stopped.
+     *
+     * @param options the parsed command-line options
+     * @throws IOException if the port cannot be bound
+     */
+    private static void serve(Map<String, String> options) throws IOException {
+        int port = options.containsKey("port") ? parsePixels(options, "port") : 8080;
+        int threads = options.containsKey("threads") ? parsePixels(options, "threads")
+                : Runtime.getRuntime().availableProcessors();
+        int queue = options.containsKey("queue") ? parsePixels(options, "queue") : 4 * threads;
+        CarveServer server = new CarveServer(port, threads, queue, CarveMode.forName(options.getOrDefault("mode", "exact")));
+        server.setCache(parseCache(options));
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getPort() + "/carve");
+    }
+
+    /**
+     * Prints the time spent in every phase.
+     */
+    private void printTimings() {
+        long total = loadNanos + energyNanos + searchNanos + removalNanos + encodeNanos;
+        System.out.printf("load %d ms%n", loadNanos / 1_000_000);
+        System.out.printf("energy %d ms%n", energyNanos / 1_000_000);
+        System.out.printf("search %d ms%n", searchNanos / 1_000_000);
+        System.out.printf("removal %d ms%n", removalNanos / 1_000_000);
+        System.out.printf("encode %d ms%n", encodeNanos / 1_000_000);
+        System.out.printf("total %d ms%n", total / 1_000_000);
+    }
+
+    /**
+     * Reads {@code --name value} pairs.
+     *
+     * @param args the arguments after the command
+     * @return the value of every option, by name without the dashes
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * Retrieves an option that must be given.
+     *
+     * @param options the parsed options
+     * @param name    the name of the option
+     * @return the value of the option
+     */
+    private static String require(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing --" + name);
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves a positive pixel count.
+     *
+     * @param options the parsed options
+     * @param name    the name of the option
+     * @return the number of pixels
+     */
+    private static int parsePixels(Map<String, String> options, String name) {
+        String value = require(options, name);
+        try {
+            int pixels = Integer.parseInt(value);
+            if (pixels < 1) {
+                throw new IllegalArgumentException("--" + name + " must be at least 1, got " + value);
+            }
+            return pixels;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number, got " + value);
+        }
+    }
+
+    /**
+     * Creates the cache asked for by {@code --cache-mb} and {@code --cache-dir}.
+     *
+     * @param options the parsed options
+     * @return the cache, or null if neither option is given
+     * @throws IOException if the cache directory cannot be created
+     */
+    private static CarveCache parseCache(Map<String, String> options) throws IOException {
+        if (!options.containsKey("cache-mb") && !options.containsKey("cache-dir")) {
+            return null;
+        }
+        long maxBytes = options.containsKey("cache-mb") ? parsePixels(options, "cache-mb") * (1L << 20)
+                : Runtime.getRuntime().maxMemory() / 4;
+        return new CarveCache(maxBytes, options.containsKey("cache-dir") ? Paths.get(options.get("cache-dir")) : null);
+    }
+
+    /**
+     * Runs the command given on the command line.
+     * Exits with status 2 on bad arguments and 1 if the image cannot be read or written.
+     *
+     * @param args the command followed by its options
+     */
+    public static void main(String[] args) {
+        if (args.length == 0 || !(args[0].equals("carve") || args[0].equals("batch") || args[0].equals("serve"))) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        Main main = new Main();
+        Map<String, String> options = null;
+        try {
+            options = parseOptions(args);
+            checkMetricsFormat(options);
+            if (args[0].equals("batch")) {
+                batch(options);
+                printMetrics(options);
+                return;
+            }
+            if (args[0].equals("serve")) {
+                serve(options);
+                return;
+            }
+            main.carve(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("carve failed: " + e.getMessage());
+            System.exit(1);
+        }
+        main.printTimings();
+        printMetrics(options);
+    }
+
+    /**
+     * Checks that {@code --metrics}, if given, names a known format, so a typo is reported
+     * before the run rather than after it.
+     *
+     * @param options the parsed command-line options
+     * @throws IllegalArgumentException if the format is neither {@code log} nor {@code prometheus}
+     */
+    private static void checkMetricsFormat(Map<String, String> options) {
+        String format = options.get("metrics");
+        if (format != null && !format.equals("log") && !format.equals("prometheus")) {
+            throw new IllegalArgumentException("metrics must be log or prometheus");
+        }
+    }
+
+    /**
+     * Prints the per-phase metrics of the run if {@code --metrics} asks for them.
+     *
+     * @param options the parsed command-line options
+     */
+    private static void printMetrics(Map<String, String> options) {
+        String format = options.get("metrics");
+        if (format == null) {
+            return;
+        }
+        if (format.equals("prometheus")) {
+            PrometheusReporter reporter = new PrometheusReporter();
+            CarveMetrics.DEFAULT.report(reporter);
+            System.out.print(reporter.getText());
+        } else {
+            CarveMetrics.DEFAULT.report(new LogReporter(System.out));
+        }
+    }
+}
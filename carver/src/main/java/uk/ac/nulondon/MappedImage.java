@@ -0,0 +1,473 @@
+package uk.ac.nulondon;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An image kept in a memory-mapped raw pixel file instead of on the heap, for pictures
+ * too large to decode into an {@link Image}.
+ * <p>
+ * The file holds a 12-byte header (stride, width and height as little-endian ints)
+ * followed by {@code height} rows of {@code stride} little-endian packed RGB ints.
+ * The top byte of every pixel is ignored, so a BGRA dump with the header prepended can be
+ * opened as is. Seams are removed in place: every row is compacted to the left and the
+ * width in the header shrinks, while the stride stays the original width.
+ * <p>
+ * The energy map and the seam cost table are never held whole. Each pass streams the rows
+ * through a three-row luminance window, computes energy and cumulative cost one row at a
+ * time with the same {@link RowKernels} as {@link Image}, and writes the back pointers to a
+ * mapped scratch file. Removing a seam and finding the next one share a single pass, so the
+ * heap holds a few rows whatever the height, and carving finds the same seams as {@link Image}.
+ */
+public class MappedImage implements Closeable {
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_BYTES = 12;
+
+    /**
+     * The largest mapping made at once; {@link FileChannel#map} cannot map more than 2 GB.
+     */
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    /**
+     * The pixel file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The header of the pixel file.
+     */
+    private final MappedByteBuffer header;
+
+    /**
+     * The rows of the pixel file, {@link #rowsPerChunk} rows per mapping.
+     */
+    private final MappedByteBuffer[] pixelMaps;
+
+    /**
+     * The mappings of {@link #pixelMaps} viewed as ints.
+     */
+    private final IntBuffer[] pixelChunks;
+
+    /**
+     * The number of rows in every pixel chunk.
+     */
+    private final int rowsPerChunk;
+
+    /**
+     * A scratch file holding one back pointer per pixel, mapped as {@link #pointerRowsPerChunk} rows per buffer.
+     */
+    private final ByteBuffer[] pointerChunks;
+
+    /**
+     * The number of rows in every back-pointer chunk.
+     */
+    private final int pointerRowsPerChunk;
+
+    /**
+     * The number of ints between the starts of two rows in the file.
+     */
+    private final int stride;
+
+    /**
+     * The number of live pixels in every row.
+     */
+    private int width;
+
+    /**
+     * The number of rows.
+     */
+    private final int height;
+
+    /**
+     * The row kernels used for energy and cumulative cost.
+     */
+    private final RowKernels kernels = RowKernels.DEFAULT;
+
+    /**
+     * Holds one row of pixels while it is read, compacted and written back.
+     */
+    private final int[] rowBuffer;
+
+    /**
+     * The padded luminance of the rows above, at and below the one being computed.
+     */
+    private short[] lumaUp;
+    private short[] lumaMiddle;
+    private short[] lumaDown;
+
+    /**
+     * An all-zero padded luminance row, standing in for the rows above and below the image.
+     */
+    private final short[] blankRow;
+
+    /**
+     * The energy of the row being computed.
+     */
+    private final double[] energyRow;
+
+    /**
+     * The cumulative cost of the previous row, and after a pass of the last row.
+     */
+    private double[] previousCost;
+
+    /**
+     * The cumulative cost of the row being computed.
+     */
+    private double[] currentCost;
+
+    /**
+     * The back pointers of the row being computed.
+     */
+    private final byte[] pointerRow;
+
+    /**
+     * Whether the back pointers and {@link #previousCost} match the current pixels.
+     */
+    private boolean costValid;
+
+    /**
+     * The number of streaming passes made over the pixel file.
+     */
+    private long passes;
+
+    /**
+     * Maps an existing raw pixel file.
+     *
+     * @param file the raw pixel file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    private MappedImage(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        stride = header.getInt(0);
+        width = header.getInt(4);
+        height = header.getInt(8);
+        if (stride <= 0 || width <= 0 || width > stride || height <= 0
+                || channel.size() < HEADER_BYTES + 4L * stride * height) {
+            channel.close();
+            throw new IOException("Not a raw pixel file: " + file);
+        }
+
+        rowsPerChunk = (int) Math.max(1, CHUNK_BYTES / (4L * stride));
+        pixelMaps = new MappedByteBuffer[(height + rowsPerChunk - 1) / rowsPerChunk];
+        pixelChunks = new IntBuffer[pixelMaps.length];
+        for (int chunk = 0; chunk < pixelMaps.length; chunk++) {
+            int rows = Math.min(rowsPerChunk, height - chunk * rowsPerChunk);
+            long position = HEADER_BYTES + 4L * stride * chunk * rowsPerChunk;
+            pixelMaps[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, position, 4L * stride * rows);
+            pixelChunks[chunk] = pixelMaps[chunk].order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+
+        Path scratchFile = Files.createTempFile(file.toAbsolutePath().getParent(), "seams", ".tmp");
+        pointerRowsPerChunk = (int) Math.max(1, CHUNK_BYTES / stride);
+        pointerChunks = new ByteBuffer[(height + pointerRowsPerChunk - 1) / pointerRowsPerChunk];
+        try (FileChannel scratch = FileChannel.open(scratchFile, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+            // the mappings stay valid after the channel is closed and the file is deleted
+            for (int chunk = 0; chunk < pointerChunks.length; chunk++) {
+                int rows = Math.min(pointerRowsPerChunk, height - chunk * pointerRowsPerChunk);
+                pointerChunks[chunk] = scratch.map(FileChannel.MapMode.READ_WRITE,
+                        (long) stride * chunk * pointerRowsPerChunk, (long) stride * rows);
+            }
+        }
+
+        rowBuffer = new int[stride];
+        lumaUp = new short[stride + 2];
+        lumaMiddle = new short[stride + 2];
+        lumaDown = new short[stride + 2];
+        blankRow = new short[stride + 2];
+        energyRow = new double[stride];
+        previousCost = new double[stride];
+        currentCost = new double[stride];
+        pointerRow = new byte[stride];
+    }
+
+    /**
+     * Opens a raw pixel file for carving.
+     *
+     * @param file the raw pixel file
+     * @return the mapped image
+     * @throws IOException if the file cannot be opened, is not a raw pixel file or cannot be mapped
+     */
+    public static MappedImage open(Path file) throws IOException {
+        return new MappedImage(file);
+    }
+
+    /**
+     * Creates a black raw pixel file of the given size and opens it.
+     *
+     * @param file   the file to create or overwrite
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @return the mapped image
+     * @throws IOException if the file cannot be written or mapped
+     */
+    public static MappedImage create(Path file, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Cannot create a " + width + "x" + height + " image");
+        }
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            head.putInt(width).putInt(width).putInt(height).flip();
+            out.write(head);
+            // extend the file to its full size without writing the pixels
+            out.write(ByteBuffer.allocate(1), HEADER_BYTES + 4L * width * height - 1);
+        }
+        return new MappedImage(file);
+    }
+
+    /**
+     * Writes an image to a raw pixel file and opens it.
+     *
+     * @param file  the file to create or overwrite
+     * @param image the image to copy
+     * @return the mapped image
+     * @throws IOException if the file cannot be written or mapped
+     */
+    public static MappedImage create(Path file, BufferedImage image) throws IOException {
+        MappedImage mapped = create(file, image.getWidth(), image.getHeight());
+        int[] row = mapped.rowBuffer;
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, image.getWidth(), 1, row, 0, image.getWidth());
+            mapped.writeRow(y, row, 0, image.getWidth());
+        }
+        return mapped;
+    }
+
+    /**
+     * Retrieves the height of the image.
+     *
+     * @return the height of the image
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Retrieves the width of the image.
+     *
+     * @return the width of the image
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Retrieves the packed RGB value of a pixel.
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return the packed RGB value, without alpha
+     */
+    public int getRGB(int row, int col) {
+        return pixelChunks[row / rowsPerChunk].get((row % rowsPerChunk) * stride + col) & 0xFFFFFF;
+    }
+
+    /**
+     * Sets the packed RGB value of a pixel.
+     *
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @param rgb the packed RGB value
+     */
+    public void setRGB(int row, int col, int rgb) {
+        pixelChunks[row / rowsPerChunk].put((row % rowsPerChunk) * stride + col, rgb & 0xFFFFFF);
+        costValid = false;
+    }
+
+    /**
+     * Retrieves how many streaming passes have been made over the pixel file.
+     *
+     * @return the number of passes
+     */
+    public long getPasses() {
+        return passes;
+    }
+
+    /**
+     * Finds the seam with the lowest total energy, streaming the image once if the
+     * cost table is not already up to date.
+     *
+     * @return the column of the seam in every row, from top to bottom
+     */
+    public int[] findSeam() {
+        if (!costValid) {
+            scan(null);
+        }
+        int minIndex = 0;
+        double minValue = previousCost[0];
+        for (int i = 1; i < width; i++) {
+            if (previousCost[i] < minValue) {
+                minIndex = i;
+                minValue = previousCost[i];
+            }
+        }
+        int[] seam = new int[height];
+        seam[height - 1] = minIndex;
+        for (int row = height - 1; row > 0; row--) {
+            seam[row - 1] = seam[row] + pointerChunks[row / pointerRowsPerChunk]
+                    .get((row % pointerRowsPerChunk) * stride + seam[row]);
+        }
+        return seam;
+    }
+
+    /**
+     * Removes a seam, compacting every row in place, and computes the cost table
+     * for the narrower image in the same pass.
+     *
+     * @param seam the column to remove from each row, from top to bottom
+     */
+    public void removeSeam(int[] seam) {
+        if (width == 1) {
+            throw new IllegalStateException("Cannot remove a seam from an image one pixel wide");
+        }
+        scan(seam);
+        header.putInt(4, width);
+    }
+
+    /**
+     * Removes seams until the image is {@code targetWidth} pixels wide.
+     *
+     * @param targetWidth the width to carve the image down to
+     */
+    public void carveToWidth(int targetWidth) {
+        if (targetWidth < 1 || targetWidth > width) {
+            throw new IllegalArgumentException("Cannot carve an image " + width + " pixels wide to " + targetWidth);
+        }
+        while (width > targetWidth) {
+            removeSeam(findSeam());
+        }
+    }
+
+    /**
+     * Copies the image onto the heap, for exporting a result that fits in memory.
+     *
+     * @return a BufferedImage with the current pixels
+     */
+    public BufferedImage toBufferedImage() {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int row = 0; row < height; row++) {
+            readRow(row, rowBuffer, width);
+            img.setRGB(0, row, width, 1, rowBuffer, 0, width);
+        }
+        return img;
+    }
+
+    /**
+     * Writes the pixels and the header back to the file.
+     */
+    public void force() {
+        header.force();
+        for (MappedByteBuffer chunk : pixelMaps) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Writes the image back and closes the pixel file. The mappings are released once collected.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Streams every row once: removes the seam from it if one is given, then computes its
+     * energy and cumulative cost. Energy for a row needs the row below, so every row is
+     * computed one step after it is read.
+     *
+     * @param seam the column to remove from each row, or null to only compute the cost table
+     */
+    private void scan(int[] seam) {
+        int newWidth = seam == null ? width : width - 1;
+        loadRow(0, seam, lumaMiddle, newWidth);
+        for (int row = 0; row < height; row++) {
+            short[] down = blankRow;
+            if (row + 1 < height) {
+                loadRow(row + 1, seam, lumaDown, newWidth);
+                down = lumaDown;
+            }
+            kernels.sobel(row > 0 ? lumaUp : blankRow, lumaMiddle, down, newWidth, energyRow);
+            if (row == 0) {
+                System.arraycopy(energyRow, 0, previousCost, 0, newWidth);
+            } else {
+                kernels.cumulativeMin(previousCost, energyRow, currentCost, pointerRow, 0, newWidth, newWidth);
+                pointerChunks[row / pointerRowsPerChunk].put((row % pointerRowsPerChunk) * stride,
+                        pointerRow, 0, newWidth);
+                double[] swap = previousCost;
+                previousCost = currentCost;
+                currentCost = swap;
+            }
+            short[] swap = lumaUp;
+            lumaUp = lumaMiddle;
+            lumaMiddle = lumaDown;
+            lumaDown = swap;
+        }
+        width = newWidth;
+        costValid = true;
+        passes++;
+    }
+
+    /**
+     * Reads a row, removes the seam from it and writes it back if one is given,
+     * and fills its padded luminance.
+     *
+     * @param row      the row to load
+     * @param seam     the column to remove from each row, or null
+     * @param luma     receives the padded luminance of the row
+     * @param newWidth the width of the row after the removal
+     */
+    private void loadRow(int row, int[] seam, short[] luma, int newWidth) {
+        readRow(row, rowBuffer, width);
+        if (seam != null) {
+            int col = seam[row];
+            System.arraycopy(rowBuffer, col + 1, rowBuffer, col, newWidth - col);
+            writeRow(row, rowBuffer, col, newWidth - col);
+        }
+        luma[0] = 0;
+        for (int col = 0; col < newWidth; col++) {
+            luma[col + 1] = Image.lumaOf(rowBuffer[col]);
+        }
+        luma[newWidth + 1] = 0;
+    }
+
+    /**
+     * Copies the first pixels of a row out of the file.
+     *
+     * @param row    the row to read
+     * @param target receives the pixels
+     * @param length the number of pixels to read
+     */
+    private void readRow(int row, int[] target, int length) {
+        pixelChunks[row / rowsPerChunk].get((row % rowsPerChunk) * stride, target, 0, length);
+    }
+
+    /**
+     * Copies part of a row into the file.
+     *
+     * @param row    the row to write
+     * @param source the pixels, indexed by column
+     * @param from   the first column to write
+     * @param length the number of pixels to write
+     */
+    private void writeRow(int row, int[] source, int from, int length) {
+        pixelChunks[row / rowsPerChunk].put((row % rowsPerChunk) * stride + from, source, from, length);
+    }
+}
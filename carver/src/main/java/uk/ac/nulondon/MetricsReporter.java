@@ -0,0 +1,16 @@
+package uk.ac.nulondon;
+
+import java.util.List;
+
+/**
+ * Receives snapshots of {@link CarveMetrics}, to log them, expose them for scraping or forward them.
+ */
+public interface MetricsReporter {
+
+    /**
+     * Reports the statistics of every phase that has run.
+     *
+     * @param phases the statistics of every phase, in the order of {@link CarvePhase}
+     */
+    void report(List<CarveMetrics.PhaseStats> phases);
+}
@@ -1,3 +1,5 @@
+package uk.ac.nulondon;
+
 /**
  * Enumerates the different types of operations that can be performed in image processing.
  */
@@ -5,5 +7,6 @@ public enum Operation {
     RANDOM_HIGHLIGHT,
     BLUE_HIGHLIGHT,
     DELETE,
+    INSERT,
     UNDO
 }
@@ -0,0 +1,109 @@
+package uk.ac.nulondon;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A {@link SeamSolver} that fills each row of the cost table on several threads.
+ * A row only depends on the row above it, so every row is split into column ranges
+ * that a fork/join pool fills in parallel before moving on to the next row.
+ * Cells are computed exactly as in the sequential solver, so the seams are identical.
+ */
+public class ParallelSeamSolver extends SeamSolver {
+
+    /**
+     * The default number of columns below which a row, or part of one, is filled on one thread.
+     */
+    public static final int DEFAULT_THRESHOLD = 2048;
+
+    /**
+     * The pool the rows are filled on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The number of columns below which a range is not split any further.
+     */
+    private final int threshold;
+
+    /**
+     * Constructs a solver that runs on the common fork/join pool with the default threshold.
+     */
+    public ParallelSeamSolver() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructs a solver that runs on the given pool.
+     *
+     * @param pool      the pool to fill rows on
+     * @param threshold the number of columns below which a range is filled sequentially
+     */
+    public ParallelSeamSolver(ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void fillRow(double[] previous, double[] current, double[] energyRow, double[] leftStep,
+                           double[] rightStep, byte[] pointers, int width) {
+        if (width < threshold * 2 || pool.getParallelism() == 1) {
+            super.fillRow(previous, current, energyRow, leftStep, rightStep, pointers, width);
+        } else {
+            pool.invoke(new RowTask(previous, current, energyRow, leftStep, rightStep, pointers, 0, width, width,
+                    threshold));
+        }
+    }
+
+    /**
+     * Fills a range of columns of one row, splitting it in half while it is above the threshold.
+     */
+    private static class RowTask extends RecursiveAction {
+
+        /**
+         * Fork/join tasks are serializable, though these are never serialized.
+         */
+        private static final long serialVersionUID = 1L;
+
+        private final double[] previous;
+        private final double[] current;
+        private final double[] energyRow;
+        private final double[] leftStep;
+        private final double[] rightStep;
+        private final byte[] pointers;
+        private final int from;
+        private final int to;
+        private final int width;
+        private final int threshold;
+
+        RowTask(double[] previous, double[] current, double[] energyRow, double[] leftStep, double[] rightStep,
+                byte[] pointers, int from, int to, int width, int threshold) {
+            this.previous = previous;
+            this.current = current;
+            this.energyRow = energyRow;
+            this.leftStep = leftStep;
+            this.rightStep = rightStep;
+            this.pointers = pointers;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                fillRange(previous, current, energyRow, leftStep, rightStep, pointers, from, to, width);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowTask(previous, current, energyRow, leftStep, rightStep, pointers, from, middle, width,
+                            threshold),
+                    new RowTask(previous, current, energyRow, leftStep, rightStep, pointers, middle, to, width,
+                            threshold));
+        }
+    }
+}
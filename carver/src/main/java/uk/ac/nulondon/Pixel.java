@@ -0,0 +1,66 @@
+package uk.ac.nulondon;
+
+import java.awt.*;
+/**
+ * Represents a pixel in an image, encapsulating its color information and its position.
+ * Pixels are handed out by {@link Image#getPixel(int, int)}; the image itself stores
+ * packed RGB ints, so a Pixel is a snapshot rather than part of the image.
+ */
+public class Pixel {
+    /**
+     * The color of the pixel.
+     */
+    public Color color;
+
+    /**
+     * The row of the image this pixel was read from.
+     */
+    public int row;
+
+    /**
+     * The column of the image this pixel was read from.
+     */
+    public int col;
+
+    /**
+     * Constructs a new Pixel object with default values.
+     * The color is initialized to null and the position to the top-left corner.
+     */
+    public Pixel() {
+        this.color = null;
+        this.row = 0;
+        this.col = 0;
+    }
+    /**
+     * Constructs a new Pixel object with specified color and position.
+     *
+     * @param color the color of the pixel
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     */
+    public Pixel(Color color, int row, int col) {
+        this.color = color;
+        this.row = row;
+        this.col = col;
+    }
+
+    /**
+     * Calculates the brightness of the pixel based on its color information.
+     * The brightness is calculated as the average of the red, green, and blue components of the color.
+     *
+     * @return the brightness value of the pixel
+     */
+    public double getBrightness() {
+        return (double) (this.color.getRed() + this.color.getBlue() + this.color.getGreen()) / 3;
+    }
+
+    /**
+     * Calculates the brightness of a packed RGB value, the same way as {@link #getBrightness()}.
+     *
+     * @param rgb the packed RGB value
+     * @return the brightness value
+     */
+    public static double getBrightness(int rgb) {
+        return (double) (((rgb >> 16) & 0xFF) + (rgb & 0xFF) + ((rgb >> 8) & 0xFF)) / 3;
+    }
+}
@@ -0,0 +1,56 @@
+package uk.ac.nulondon;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Formats the metrics in the Prometheus text exposition format, for scraping over HTTP.
+ * Every report replaces the text returned by {@link #getText()}.
+ */
+public class PrometheusReporter implements MetricsReporter {
+
+    /**
+     * The quantiles reported for every phase.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * The text of the last report.
+     */
+    private volatile String text = "";
+
+    @Override
+    public void report(List<CarveMetrics.PhaseStats> phases) {
+        StringBuilder out = new StringBuilder();
+        out.append("# TYPE carve_phase_seconds summary\n");
+        for (CarveMetrics.PhaseStats stats : phases) {
+            String phase = stats.getPhase().name().toLowerCase();
+            for (double quantile : QUANTILES) {
+                out.append(String.format(Locale.ROOT, "carve_phase_seconds{phase=\"%s\",quantile=\"%s\"} %.6f%n",
+                        phase, quantile, stats.getPercentile(quantile) / 1e9));
+            }
+            out.append(String.format(Locale.ROOT, "carve_phase_seconds_sum{phase=\"%s\"} %.6f%n", phase, stats.getTotalNanos() / 1e9));
+            out.append(String.format(Locale.ROOT, "carve_phase_seconds_count{phase=\"%s\"} %d%n", phase, stats.getCount()));
+        }
+        out.append("# TYPE carve_phase_pixels_total counter\n");
+        for (CarveMetrics.PhaseStats stats : phases) {
+            out.append(String.format(Locale.ROOT, "carve_phase_pixels_total{phase=\"%s\"} %d%n",
+                    stats.getPhase().name().toLowerCase(), stats.getPixels()));
+        }
+        out.append("# TYPE carve_phase_seams_total counter\n");
+        for (CarveMetrics.PhaseStats stats : phases) {
+            out.append(String.format(Locale.ROOT, "carve_phase_seams_total{phase=\"%s\"} %d%n",
+                    stats.getPhase().name().toLowerCase(), stats.getSeams()));
+        }
+        text = out.toString();
+    }
+
+    /**
+     * Retrieves the text of the last report.
+     *
+     * @return the metrics in the Prometheus text format
+     */
+    public String getText() {
+        return text;
+    }
+}
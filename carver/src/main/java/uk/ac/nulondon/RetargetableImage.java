@@ -0,0 +1,370 @@
+package uk.ac.nulondon;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An image carved once, together with the order in which its pixels were removed, so it can be
+ * produced at any width down to a minimum with a single linear pass and no seam search.
+ * <p>
+ * For every pixel the index map holds the number of the seam that removed it, counting from 0;
+ * pixels that survive down to the minimum width hold the number of seams removed. Every row has
+ * exactly one pixel per seam, so keeping the pixels whose index is at least {@code width - target}
+ * leaves {@code target} pixels in every row: the image carving would have produced.
+ * The map is 2 bytes per pixel, or 4 if more than 65535 seams are removed.
+ * <p>
+ * The file written by {@link #save(Path)} holds a 16-byte header (a magic number, width, height
+ * and minimum width as little-endian ints), the pixels as little-endian packed RGB ints, row by
+ * row, then the index map as little-endian 16-bit or 32-bit unsigned ints in the same order.
+ */
+public class RetargetableImage {
+
+    /**
+     * The first int of a saved file, "RTG1" read as a little-endian int.
+     */
+    static final int MAGIC = 0x31475452;
+
+    /**
+     * The size of the file header in bytes.
+     */
+    static final int HEADER_BYTES = 16;
+
+    /**
+     * The width of the original image.
+     */
+    private final int width;
+
+    /**
+     * The height of the image.
+     */
+    private final int height;
+
+    /**
+     * The smallest width the image can be produced at.
+     */
+    private final int minWidth;
+
+    /**
+     * The packed RGB values of the original image, row by row.
+     */
+    private final int[] pixels;
+
+    /**
+     * The removal index of every pixel when it fits in 16 bits, or null.
+     */
+    private final char[] shortOrder;
+
+    /**
+     * The removal index of every pixel when it does not fit in 16 bits, or null.
+     */
+    private final int[] intOrder;
+
+    /**
+     * Constructs a retargetable image from its parts.
+     *
+     * @param width      the width of the original image
+     * @param height     the height of the image
+     * @param minWidth   the smallest width the image can be produced at
+     * @param pixels     the packed RGB values of the original image, row by row
+     * @param shortOrder the removal index of every pixel, or null if {@code intOrder} is used
+     * @param intOrder   the removal index of every pixel, or null if {@code shortOrder} is used
+     */
+    private RetargetableImage(int width, int height, int minWidth, int[] pixels, char[] shortOrder, int[] intOrder) {
+        this.width = width;
+        this.height = height;
+        this.minWidth = minWidth;
+        this.pixels = pixels;
+        this.shortOrder = shortOrder;
+        this.intOrder = intOrder;
+    }
+
+    /**
+     * Carves an image down to {@code minWidth} once, recording when every pixel is removed.
+     * {@link CarveMode#EXACT} records the seams repeated {@link Image#getSeam()} would remove;
+     * in {@link CarveMode#FAST} the seams of one batch are numbered from left to right.
+     *
+     * @param source   the image to carve
+     * @param minWidth the smallest width the result can be produced at, at least 1
+     * @param mode     how to find the seams
+     * @return the image with its removal order
+     */
+    public static RetargetableImage precompute(BufferedImage source, int minWidth, CarveMode mode) {
+        return precompute(new Image(source), minWidth, mode);
+    }
+
+    /**
+     * Carves an image down to {@code minWidth} once, recording when every pixel is removed.
+     * The image is carved in place, and an energy map it already has is used as is.
+     *
+     * @param image    the image to carve, before any seam is removed
+     * @param minWidth the smallest width the result can be produced at, at least 1
+     * @param mode     how to find the seams
+     * @return the image with its removal order
+     * @see #precompute(BufferedImage, int, CarveMode)
+     */
+    public static RetargetableImage precompute(Image image, int minWidth, CarveMode mode) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (minWidth < 1 || minWidth > width) {
+            throw new IllegalArgumentException("Cannot carve an image " + width + " pixels wide to " + minWidth);
+        }
+        int[] pixels = new int[width * height];
+        // the column every live pixel had in the original image
+        int[][] originalCols = new int[height][width];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                pixels[row * width + col] = image.getRGB(row, col);
+                originalCols[row][col] = col;
+            }
+        }
+        int removals = width - minWidth;
+        int[] order = new int[width * height];
+        Arrays.fill(order, removals);
+
+        boolean incremental = mode == CarveMode.EXACT;
+        image.setIncrementalSeams(incremental);
+        int removed = 0;
+        while (image.getWidth() > minWidth) {
+            int[][] seams;
+            if (mode == CarveMode.FAST) {
+                seams = image.getSeams(Math.min(image.getWidth() - minWidth,
+                        Math.max(1, image.getWidth() / Image.FAST_SEAMS_PER_PASS)));
+                Arrays.sort(seams, (a, b) -> Integer.compare(a[0], b[0]));
+            } else {
+                seams = new int[][]{mode == CarveMode.PYRAMID ? image.getApproximateSeam() : image.getSeam()};
+            }
+            record(seams, removed, originalCols, order, image.getWidth(), width);
+            if (seams.length == 1) {
+                image.removeSeam(seams[0]);
+            } else {
+                image.removeSeams(seams);
+            }
+            removed += seams.length;
+        }
+
+        if (removals <= Character.MAX_VALUE) {
+            char[] shortOrder = new char[order.length];
+            for (int i = 0; i < order.length; i++) {
+                shortOrder[i] = (char) order[i];
+            }
+            return new RetargetableImage(width, height, minWidth, pixels, shortOrder, null);
+        }
+        return new RetargetableImage(width, height, minWidth, pixels, null, order);
+    }
+
+    /**
+     * Numbers the pixels of a batch of seams and drops them from the map of original columns.
+     *
+     * @param seams        the seams about to be removed, numbered in this order
+     * @param first        the number of the first seam
+     * @param originalCols the original column of every live pixel, compacted like the image
+     * @param order        receives the removal index of every removed pixel
+     * @param liveWidth    the current width of the image
+     * @param width        the original width of the image
+     */
+    private static void record(int[][] seams, int first, int[][] originalCols, int[] order, int liveWidth, int width) {
+        int[] cols = new int[seams.length];
+        for (int row = 0; row < originalCols.length; row++) {
+            int[] rowCols = originalCols[row];
+            for (int i = 0; i < seams.length; i++) {
+                cols[i] = seams[i][row];
+                order[row * width + rowCols[cols[i]]] = first + i;
+            }
+            Arrays.sort(cols);
+            int write = cols[0];
+            for (int i = 0; i < cols.length; i++) {
+                int next = i + 1 < cols.length ? cols[i + 1] : liveWidth;
+                int length = next - cols[i] - 1;
+                System.arraycopy(rowCols, cols[i] + 1, rowCols, write, length);
+                write += length;
+            }
+        }
+    }
+
+    /**
+     * Produces the image at a given width by dropping every pixel removed before that width
+     * was reached, in one pass over the pixels.
+     *
+     * @param targetWidth the width of the result, between the minimum and the original width
+     * @return the image at that width
+     */
+    public BufferedImage toWidth(int targetWidth) {
+        if (targetWidth < minWidth || targetWidth > width) {
+            throw new IllegalArgumentException("Width must be between " + minWidth + " and " + width
+                    + ", got " + targetWidth);
+        }
+        BufferedImage result = new BufferedImage(targetWidth, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        int threshold = width - targetWidth;
+        int out = 0;
+        if (shortOrder != null) {
+            for (int i = 0; i < pixels.length; i++) {
+                if (shortOrder[i] >= threshold) {
+                    data[out++] = pixels[i];
+                }
+            }
+        } else {
+            for (int i = 0; i < pixels.length; i++) {
+                if (intOrder[i] >= threshold) {
+                    data[out++] = pixels[i];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the heap this image and its index map use.
+     *
+     * @return the approximate size in bytes
+     */
+    public long bytes() {
+        return 64 + 4L * pixels.length + (shortOrder != null ? 2L * shortOrder.length : 4L * intOrder.length);
+    }
+
+    /**
+     * Retrieves the width of the original image.
+     *
+     * @return the largest width the image can be produced at
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Retrieves the height of the image.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Retrieves the smallest width the image can be produced at.
+     *
+     * @return the minimum width
+     */
+    public int getMinWidth() {
+        return minWidth;
+    }
+
+    /**
+     * Writes the image and its index map to a file, replacing it if it exists.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(width).putInt(height).putInt(minWidth).flip();
+            writeFully(channel, header);
+            // one row at a time, so the buffer stays small whatever the size of the image
+            int orderBytes = shortOrder != null ? Character.BYTES : Integer.BYTES;
+            ByteBuffer row = ByteBuffer.allocate(width * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int y = 0; y < height; y++) {
+                row.clear();
+                row.asIntBuffer().put(pixels, y * width, width);
+                row.limit(width * Integer.BYTES);
+                writeFully(channel, row);
+            }
+            for (int y = 0; y < height; y++) {
+                row.clear();
+                if (shortOrder != null) {
+                    row.asCharBuffer().put(shortOrder, y * width, width);
+                } else {
+                    row.asIntBuffer().put(intOrder, y * width, width);
+                }
+                row.limit(width * orderBytes);
+                writeFully(channel, row);
+            }
+        }
+    }
+
+    /**
+     * Reads an image and its index map written by {@link #save(Path)}.
+     *
+     * @param file the file to read
+     * @return the retargetable image
+     * @throws IOException if the file cannot be read or is not a retargetable image
+     */
+    public static RetargetableImage load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+            int magic = header.getInt();
+            int width = header.getInt();
+            int height = header.getInt();
+            int minWidth = header.getInt();
+            if (magic != MAGIC) {
+                throw new IOException(file + " is not a retargetable image");
+            }
+            boolean shortIndices = width - minWidth <= Character.MAX_VALUE;
+            long expected = HEADER_BYTES + (long) width * height * (Integer.BYTES
+                    + (shortIndices ? Character.BYTES : Integer.BYTES));
+            if (width < 1 || height < 1 || minWidth < 1 || minWidth > width
+                    || (long) width * height > Integer.MAX_VALUE || channel.size() != expected) {
+                throw new IOException(file + " is truncated or has a corrupt header");
+            }
+            int[] pixels = new int[width * height];
+            char[] shortOrder = shortIndices ? new char[width * height] : null;
+            int[] intOrder = shortIndices ? null : new int[width * height];
+            ByteBuffer row = ByteBuffer.allocate(width * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int y = 0; y < height; y++) {
+                row.clear().limit(width * Integer.BYTES);
+                readFully(channel, row);
+                row.flip();
+                row.asIntBuffer().get(pixels, y * width, width);
+            }
+            for (int y = 0; y < height; y++) {
+                row.clear().limit(width * (shortIndices ? Character.BYTES : Integer.BYTES));
+                readFully(channel, row);
+                row.flip();
+                if (shortIndices) {
+                    row.asCharBuffer().get(shortOrder, y * width, width);
+                } else {
+                    row.asIntBuffer().get(intOrder, y * width, width);
+                }
+            }
+            return new RetargetableImage(width, height, minWidth, pixels, shortOrder, intOrder);
+        }
+    }
+
+    /**
+     * Writes all the remaining bytes of a buffer.
+     *
+     * @param channel the channel to write to
+     * @param buffer  the bytes to write
+     * @throws IOException if the channel cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Fills the remaining space of a buffer.
+     *
+     * @param channel the channel to read from
+     * @param buffer  the buffer to fill
+     * @throws IOException if the channel ends first or cannot be read
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+}
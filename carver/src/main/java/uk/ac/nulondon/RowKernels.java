@@ -0,0 +1,68 @@
+package uk.ac.nulondon;
+
+/**
+ * Row-at-a-time kernels for the energy and seam computations.
+ * The energy kernel reads the padded fixed-point luminance rows kept by {@link Image},
+ * so it can read the neighbors of the first and last pixel without bounds checks;
+ * a pixel outside the image counts as black, like in {@link Image#energyAt(int, int)}.
+ * Every implementation gives bit-identical results to {@link ScalarKernels}.
+ */
+public interface RowKernels {
+
+    /**
+     * The kernels used by the energy map and the seam solvers:
+     * the vectorised ones if the {@code jdk.incubator.vector} module is available
+     * and {@code -Dcarve.vector=false} is not set, the scalar ones otherwise.
+     */
+    RowKernels DEFAULT = load();
+
+    /**
+     * Computes the Sobel energy of a row from the padded luminance of it and its neighbors.
+     *
+     * @param up     the padded luminance of the row above, all zeros for the first row
+     * @param middle the padded luminance of the row
+     * @param down   the padded luminance of the row below, all zeros for the last row
+     * @param width  the number of live pixels
+     * @param out    receives the energy of every pixel, unpadded
+     */
+    void sobel(short[] up, short[] middle, short[] down, int width, double[] out);
+
+    /**
+     * Computes the cumulative seam cost and back pointer of the cells {@code from} to {@code to - 1}
+     * of a row, with the same tie-breaking as {@link SeamSolver#bestParent(double[], int, int)}.
+     *
+     * @param previous  the cumulative cost of the row above
+     * @param energyRow the energy of the row
+     * @param current   receives the cumulative cost of the row
+     * @param pointers  receives the back pointer of every cell in the range
+     * @param from      the first column to fill
+     * @param to        one past the last column to fill
+     * @param width     the number of live columns
+     */
+    void cumulativeMin(double[] previous, double[] energyRow, double[] current, byte[] pointers,
+                       int from, int to, int width);
+
+    /**
+     * Retrieves a short name for the implementation, used in benchmark output.
+     *
+     * @return the name of the implementation
+     */
+    String name();
+
+    /**
+     * Picks the vectorised kernels if they can be loaded, falling back to the scalar ones.
+     *
+     * @return the kernels to use
+     */
+    static RowKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("carve.vector", "true"))) {
+            return new ScalarKernels();
+        }
+        try {
+            // loaded by name, so nothing else links against jdk.incubator.vector
+            return (RowKernels) Class.forName("uk.ac.nulondon.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernels();
+        }
+    }
+}
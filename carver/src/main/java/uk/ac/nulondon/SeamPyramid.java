@@ -0,0 +1,321 @@
+package uk.ac.nulondon;
+
+/**
+ * A luminance pyramid for finding approximate seams on very large images.
+ * Every level halves the one below it by averaging 2x2 blocks of luminance. A seam is solved
+ * exactly at the coarsest level, and every finer level only searches a band of columns around
+ * the path of the level above, scaled up. The finest level reads the image's own energy map,
+ * so the seam lies on the image; it is usually, but not always, the lowest-energy one.
+ * The coarse levels always search on Sobel energy; step costs are only counted at the finest level.
+ * <p>
+ * The pyramid is built once and kept while seams are removed, mapping coarse columns onto the
+ * narrower image in proportion. Once a coarsest pixel's worth of columns is gone it is stale
+ * and has to be rebuilt.
+ */
+public class SeamPyramid {
+
+    /**
+     * The smallest width or height a level may have; small images get fewer levels.
+     */
+    static final int MIN_LEVEL_SIZE = 16;
+
+    /**
+     * The order in which parents are considered, matching {@link SeamSolver#bestParent}.
+     */
+    private static final int[] PARENT_ORDER = {0, -1, 1};
+
+    /**
+     * The padded luminance of every level above the image, {@code levels[k - 1]} holding level k,
+     * laid out like the luminance of {@link Image}.
+     */
+    private final short[][][] levels;
+
+    /**
+     * The width of every level, level 0 being the image when the pyramid was built.
+     */
+    private final int[] widths;
+
+    /**
+     * The height of every level, level 0 being the image when the pyramid was built.
+     */
+    private final int[] heights;
+
+    /**
+     * The solver for the coarsest level.
+     */
+    private final SeamSolver solver = new SeamSolver();
+
+    /**
+     * The energy of the coarsest level.
+     */
+    private final double[][] coarseEnergy;
+
+    /**
+     * An all-zero padded luminance row, standing in for the rows above and below a level.
+     */
+    private final short[] blankRow;
+
+    /**
+     * The cumulative cost of the band of the row above, and of the band being computed.
+     */
+    private double[] previousCost = new double[0];
+    private double[] currentCost = new double[0];
+
+    /**
+     * The energy of the band of the row being computed.
+     */
+    private double[] bandEnergy = new double[0];
+
+    /**
+     * For every row and cell of its band, the offset (-1, 0 or 1) of the cheapest cell above.
+     */
+    private byte[][] backPointers = new byte[0][];
+
+    /**
+     * The first column of the band of every row.
+     */
+    private int[] bandStart = new int[0];
+
+    /**
+     * Builds the pyramid of an image.
+     *
+     * @param luma      the padded luminance of the image, as kept by {@link Image}
+     * @param width     the number of live columns
+     * @param height    the number of live rows
+     * @param maxLevels the number of levels to build above the image, fewer if the image is small
+     */
+    SeamPyramid(short[][] luma, int width, int height, int maxLevels) {
+        int count = 0;
+        int w = width;
+        int h = height;
+        while (count < maxLevels && (w + 1) / 2 >= MIN_LEVEL_SIZE && (h + 1) / 2 >= MIN_LEVEL_SIZE) {
+            w = (w + 1) / 2;
+            h = (h + 1) / 2;
+            count++;
+        }
+        levels = new short[count][][];
+        widths = new int[count + 1];
+        heights = new int[count + 1];
+        widths[0] = width;
+        heights[0] = height;
+        short[][] below = luma;
+        for (int k = 1; k <= count; k++) {
+            widths[k] = (widths[k - 1] + 1) / 2;
+            heights[k] = (heights[k - 1] + 1) / 2;
+            levels[k - 1] = downscale(below, widths[k - 1], heights[k - 1]);
+            below = levels[k - 1];
+        }
+        blankRow = new short[widths[count > 0 ? 1 : 0] + 2];
+        coarseEnergy = new double[heights[count]][widths[count]];
+        if (count > 0) {
+            for (int row = 0; row < heights[count]; row++) {
+                for (int col = 0; col < widths[count]; col++) {
+                    coarseEnergy[row][col] = energyAt(count, row, col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Halves a padded luminance grid, averaging every 2x2 block; blocks cut off by the
+     * right or bottom edge average the cells they have.
+     *
+     * @param below  the padded luminance of the level below
+     * @param width  the width of the level below
+     * @param height the height of the level below
+     * @return the padded luminance of the new level
+     */
+    private static short[][] downscale(short[][] below, int width, int height) {
+        int coarseWidth = (width + 1) / 2;
+        int coarseHeight = (height + 1) / 2;
+        short[][] level = new short[coarseHeight][coarseWidth + 2];
+        for (int row = 0; row < coarseHeight; row++) {
+            short[] upper = below[2 * row];
+            short[] lower = 2 * row + 1 < height ? below[2 * row + 1] : null;
+            short[] out = level[row];
+            for (int col = 0; col < coarseWidth; col++) {
+                int left = 2 * col + 1;
+                boolean right = 2 * col + 1 < width;
+                int sum = upper[left] + (right ? upper[left + 1] : 0);
+                int cells = right ? 2 : 1;
+                if (lower != null) {
+                    sum += lower[left] + (right ? lower[left + 1] : 0);
+                    cells *= 2;
+                }
+                out[col + 1] = (short) (sum / cells);
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Checks whether the pyramid no longer matches the image closely enough to guide a search.
+     *
+     * @param width  the current width of the image
+     * @param height the current height of the image
+     * @return true if the pyramid has to be rebuilt
+     */
+    boolean isStale(int width, int height) {
+        return height != heights[0] || width > widths[0] || widths[0] - width >= 1 << levels.length;
+    }
+
+    /**
+     * Finds a low-energy seam, solving it at the coarsest level and refining it level by level.
+     *
+     * @param energy     the energy map of the image, indexed as {@code energy[row][col]}
+     * @param leftSteps  the extra cost of reaching every pixel from up-left, or null for none
+     * @param rightSteps the extra cost of reaching every pixel from up-right, or null for none
+     * @param width      the current width of the image
+     * @param height     the current height of the image
+     * @param band       how many columns either side of the scaled-up path every level searches
+     * @return the column of the seam in every row, from top to bottom
+     */
+    int[] findSeam(double[][] energy, double[][] leftSteps, double[][] rightSteps, int width, int height, int band) {
+        int top = levels.length;
+        if (top == 0) {
+            return solver.findSeam(energy, leftSteps, rightSteps, width, height);
+        }
+        int[] path = solver.findSeam(coarseEnergy, widths[top], heights[top]);
+        for (int k = top - 1; k >= 0; k--) {
+            int levelWidth = k == 0 ? width : widths[k];
+            int levelHeight = k == 0 ? height : heights[k];
+            int[] center = new int[levelHeight];
+            for (int row = 0; row < levelHeight; row++) {
+                // the middle of the coarse pixel, scaled to this level; at level 0 this also absorbs removed seams
+                long scaled = (long) ((path[row >> 1] + 0.5) * levelWidth / widths[k + 1]);
+                center[row] = (int) Math.min(levelWidth - 1, scaled);
+            }
+            path = k == 0 ? refine(0, energy, leftSteps, rightSteps, center, levelWidth, levelHeight, band)
+                    : refine(k, energy, null, null, center, levelWidth, levelHeight, band);
+        }
+        return path;
+    }
+
+    /**
+     * Finds the lowest-energy seam of a level that stays within a band around a path.
+     * Cells are compared with the same tie-breaking as {@link SeamSolver#bestParent}, so a band
+     * covering the whole level gives the exact seam.
+     *
+     * @param level      the level to search, 0 for the image itself
+     * @param energy     the energy map of the image, read at level 0
+     * @param leftSteps  the extra cost of reaching every pixel from up-left at level 0, or null for none
+     * @param rightSteps the extra cost of reaching every pixel from up-right at level 0, or null for none
+     * @param center     the column the band is centered on in every row
+     * @param width      the width of the level
+     * @param height     the height of the level
+     * @param band       how many columns either side of the center to search
+     * @return the column of the seam in every row, from top to bottom
+     */
+    private int[] refine(int level, double[][] energy, double[][] leftSteps, double[][] rightSteps, int[] center,
+                         int width, int height, int band) {
+        int span = 2 * band + 1;
+        if (previousCost.length < span) {
+            previousCost = new double[span];
+            currentCost = new double[span];
+            bandEnergy = new double[span];
+        }
+        if (backPointers.length < height || (height > 0 && backPointers[0].length < span)) {
+            backPointers = new byte[Math.max(height, backPointers.length)][span];
+            bandStart = new int[backPointers.length];
+        }
+        double[] previous = previousCost;
+        double[] current = currentCost;
+        int previousStart = 0;
+        int previousEnd = -1;
+        for (int row = 0; row < height; row++) {
+            int start = Math.max(0, center[row] - band);
+            int end = Math.min(width - 1, center[row] + band);
+            fillBandEnergy(level, energy, row, start, end);
+            byte[] pointers = backPointers[row];
+            double[] leftStep = SeamSolver.stepRow(leftSteps, row);
+            double[] rightStep = SeamSolver.stepRow(rightSteps, row);
+            for (int col = start; col <= end; col++) {
+                int cell = col - start;
+                if (row == 0) {
+                    current[cell] = bandEnergy[cell];
+                    continue;
+                }
+                // straight up first, then up-left, then up-right, like bestParent
+                double best = Double.POSITIVE_INFINITY;
+                byte ref = 0;
+                for (int offset : PARENT_ORDER) {
+                    int parent = col + offset;
+                    if (parent < previousStart || parent > previousEnd) {
+                        continue;
+                    }
+                    double parentCost = previous[parent - previousStart]
+                            + SeamSolver.stepCost(leftStep, rightStep, col, offset);
+                    if (parentCost < best) {
+                        best = parentCost;
+                        ref = (byte) offset;
+                    }
+                }
+                current[cell] = best + bandEnergy[cell];
+                pointers[cell] = ref;
+            }
+            bandStart[row] = start;
+            previousStart = start;
+            previousEnd = end;
+            double[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        // the leftmost cheapest end point, like SeamSolver.traceBack
+        int col = previousStart;
+        for (int candidate = previousStart + 1; candidate <= previousEnd; candidate++) {
+            if (previous[candidate - previousStart] < previous[col - previousStart]) {
+                col = candidate;
+            }
+        }
+        int[] seam = new int[height];
+        seam[height - 1] = col;
+        for (int row = height - 1; row > 0; row--) {
+            seam[row - 1] = seam[row] + backPointers[row][seam[row] - bandStart[row]];
+        }
+        return seam;
+    }
+
+    /**
+     * Reads the energy of the band of one row into {@link #bandEnergy}.
+     *
+     * @param level  the level, 0 for the image itself
+     * @param energy the energy map of the image, read at level 0
+     * @param row    the row
+     * @param start  the first column of the band
+     * @param end    the last column of the band
+     */
+    private void fillBandEnergy(int level, double[][] energy, int row, int start, int end) {
+        if (level == 0) {
+            System.arraycopy(energy[row], start, bandEnergy, 0, end - start + 1);
+        } else {
+            for (int col = start; col <= end; col++) {
+                bandEnergy[col - start] = energyAt(level, row, col);
+            }
+        }
+    }
+
+    /**
+     * Computes the Sobel energy of a cell of a level above the image.
+     *
+     * @param level the level, at least 1
+     * @param row   the row of the cell
+     * @param col   the column of the cell
+     * @return the energy of the cell
+     */
+    private double energyAt(int level, int row, int col) {
+        short[][] luma = levels[level - 1];
+        short[] up = row > 0 ? luma[row - 1] : blankRow;
+        short[] down = row + 1 < heights[level] ? luma[row + 1] : blankRow;
+        return Image.energyFromLuma(up, luma[row], down, col);
+    }
+
+    /**
+     * Retrieves the number of levels above the image.
+     *
+     * @return the number of levels
+     */
+    int getLevels() {
+        return levels.length;
+    }
+}
@@ -0,0 +1,468 @@
+package uk.ac.nulondon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the lowest-energy vertical seam of an energy map with dynamic programming.
+ * Instead of carrying a partial seam for every cell, the solver records for every
+ * cell which of the three cells above it was cheapest, and traces the seam back
+ * once at the end. The back-pointer table and the two cost rows are kept between
+ * calls, so finding a seam only allocates the returned array.
+ * <p>
+ * The energy map can come with step costs, the extra cost of reaching every cell from up-left
+ * and from up-right (see {@link CostFunction#fillSteps}); they are added to the parents in
+ * {@link #bestParent(double[], double[], double[], int, int)}, so forward energy runs through
+ * the same tables and hooks as any other cost.
+ * <p>
+ * Horizontal seams are found on the same row-major energy map by running the same
+ * recurrence column by column: each column is gathered into a scratch array and filled
+ * with the row kernel, so no transposed copy of the image is needed.
+ */
+public class SeamSolver {
+
+    /**
+     * The cumulative cost of the row above the one being computed.
+     */
+    private double[] previousValues = new double[0];
+
+    /**
+     * The cumulative cost of the row being computed.
+     */
+    private double[] currentValues = new double[0];
+
+    /**
+     * For every cell, the offset (-1, 0 or 1) of the cheapest cell in the row above.
+     */
+    private byte[][] backPointers = new byte[0][];
+
+    /**
+     * The back-pointer value marking a pixel already used by a seam in {@link #findSeams}.
+     */
+    private static final byte TAKEN = 2;
+
+    /**
+     * The order in which parents are considered, matching {@link #bestParent}.
+     */
+    private static final int[] PARENT_ORDER = {0, -1, 1};
+
+    /**
+     * The full cumulative-cost table used by {@link #findSeams}, allocated on first use.
+     */
+    private double[][] costTable = new double[0][];
+
+    /**
+     * One column of the energy map, gathered for {@link #findHorizontalSeam}.
+     */
+    private double[] column = new double[0];
+
+    /**
+     * The transposed energy map used by {@link #findHorizontalSeams}, allocated on first use.
+     */
+    private double[][] transposed = new double[0][];
+
+    /**
+     * The side of the square tiles the energy map is transposed in, so both sides stay in cache.
+     */
+    private static final int TRANSPOSE_TILE = 32;
+
+    /**
+     * Finds the seam with the lowest total energy.
+     * Ties are broken the same way for every cell: straight up first, then up-left, then up-right,
+     * and the leftmost end point wins among equal totals.
+     *
+     * @param energy the energy of every pixel, indexed as {@code energy[row][col]}
+     * @param width  the number of live columns in every row
+     * @param height the number of rows
+     * @return the column of the seam in every row, from top to bottom
+     */
+    public int[] findSeam(double[][] energy, int width, int height) {
+        return findSeam(energy, null, null, width, height);
+    }
+
+    /**
+     * Finds the seam with the lowest total cost, counting the step costs of the moves it makes.
+     *
+     * @param energy     the cost of every pixel, indexed as {@code energy[row][col]}
+     * @param leftSteps  the extra cost of reaching every cell from up-left, or null for none
+     * @param rightSteps the extra cost of reaching every cell from up-right, or null for none
+     * @param width      the number of live columns in every row
+     * @param height     the number of rows
+     * @return the column of the seam in every row, from top to bottom
+     */
+    public int[] findSeam(double[][] energy, double[][] leftSteps, double[][] rightSteps, int width, int height) {
+        double[] lastRow = fillTable(energy, leftSteps, rightSteps, width, height);
+        return traceBack(backPointers, lastRow, width, height);
+    }
+
+    /**
+     * Finds up to {@code count} disjoint, non-crossing low-energy seams from a single pass.
+     * The whole cumulative-cost table is kept, and seams are traced up from the cheapest
+     * end points first. At every row a trace moves to the cheapest of its three parents that
+     * is not taken by an earlier seam and would not cut diagonally across one; a trace with
+     * no such parent is dropped. The first seam is always the one {@link #findSeam} would return.
+     *
+     * @param energy the energy of every pixel, indexed as {@code energy[row][col]}
+     * @param width  the number of live columns in every row
+     * @param height the number of rows
+     * @param count  the maximum number of seams to return
+     * @return the seams found, each holding its column in every row from top to bottom
+     */
+    public int[][] findSeams(double[][] energy, int width, int height, int count) {
+        return findSeams(energy, null, null, width, height, count);
+    }
+
+    /**
+     * Finds up to {@code count} disjoint, non-crossing seams from a single pass, counting the
+     * step costs of the moves they make, the way {@link #findSeams(double[][], int, int, int)} does.
+     *
+     * @param energy     the cost of every pixel, indexed as {@code energy[row][col]}
+     * @param leftSteps  the extra cost of reaching every cell from up-left, or null for none
+     * @param rightSteps the extra cost of reaching every cell from up-right, or null for none
+     * @param width      the number of live columns in every row
+     * @param height     the number of rows
+     * @param count      the maximum number of seams to return
+     * @return the seams found, each holding its column in every row from top to bottom
+     */
+    public int[][] findSeams(double[][] energy, double[][] leftSteps, double[][] rightSteps,
+                             int width, int height, int count) {
+        ensureCapacity(width, height);
+        if (costTable.length < height || (height > 0 && costTable[0].length < width)) {
+            costTable = new double[Math.max(height, costTable.length)]
+                    [Math.max(width, costTable.length > 0 ? costTable[0].length : 0)];
+        }
+        System.arraycopy(energy[0], 0, costTable[0], 0, width);
+        for (int row = 1; row < height; row++) {
+            fillRow(costTable[row - 1], costTable[row], energy[row], stepRow(leftSteps, row), stepRow(rightSteps, row),
+                    backPointers[row], width);
+        }
+        // the back pointers are not needed here, so the table holds the taken marks instead
+        for (int row = 0; row < height; row++) {
+            Arrays.fill(backPointers[row], 0, width, (byte) 0);
+        }
+
+        double[] lastRow = costTable[height - 1];
+        Integer[] order = new Integer[width];
+        for (int i = 0; i < width; i++) {
+            order[i] = i;
+        }
+        // stable sort, so equal totals keep the leftmost-first rule of traceBack
+        Arrays.sort(order, Comparator.comparingDouble(i -> lastRow[i]));
+
+        List<int[]> seams = new ArrayList<>();
+        int[] seam = new int[height];
+        for (int i = 0; i < width && seams.size() < count; i++) {
+            if (traceFree(order[i], seam, leftSteps, rightSteps, width, height)) {
+                for (int row = 0; row < height; row++) {
+                    backPointers[row][seam[row]] = TAKEN;
+                }
+                seams.add(seam.clone());
+            }
+        }
+        return seams.toArray(new int[0][]);
+    }
+
+    /**
+     * Finds the horizontal seam with the lowest total energy, walking the energy map column by column.
+     * Ties are broken like {@link #findSeam}: straight across first, then up, then down,
+     * and the topmost end point wins among equal totals.
+     *
+     * @param energy the energy of every pixel, indexed as {@code energy[row][col]}
+     * @param width  the number of live columns in every row
+     * @param height the number of rows
+     * @return the row of the seam in every column, from left to right
+     */
+    public int[] findHorizontalSeam(double[][] energy, int width, int height) {
+        // the table is indexed by column then row, so it has the shape of a transposed image
+        ensureCapacity(height, width);
+        if (column.length < height) {
+            column = new double[height];
+        }
+        double[] previous = previousValues;
+        double[] current = currentValues;
+        for (int row = 0; row < height; row++) {
+            previous[row] = energy[row][0];
+        }
+        for (int col = 1; col < width; col++) {
+            for (int row = 0; row < height; row++) {
+                column[row] = energy[row][col];
+            }
+            fillRow(previous, current, column, null, null, backPointers[col], height);
+            double[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return traceBack(backPointers, previous, height, width);
+    }
+
+    /**
+     * Finds up to {@code count} disjoint, non-crossing low-energy horizontal seams from a single pass,
+     * the way {@link #findSeams} finds vertical ones. The energy map is transposed once, tile by tile,
+     * since the whole cost table is kept anyway.
+     *
+     * @param energy the energy of every pixel, indexed as {@code energy[row][col]}
+     * @param width  the number of live columns in every row
+     * @param height the number of rows
+     * @param count  the maximum number of seams to return
+     * @return the seams found, each holding its row in every column from left to right
+     */
+    public int[][] findHorizontalSeams(double[][] energy, int width, int height, int count) {
+        if (transposed.length < width || (width > 0 && transposed[0].length < height)) {
+            transposed = new double[Math.max(width, transposed.length)]
+                    [Math.max(height, transposed.length > 0 ? transposed[0].length : 0)];
+        }
+        for (int rowTile = 0; rowTile < height; rowTile += TRANSPOSE_TILE) {
+            for (int colTile = 0; colTile < width; colTile += TRANSPOSE_TILE) {
+                for (int row = rowTile; row < Math.min(height, rowTile + TRANSPOSE_TILE); row++) {
+                    double[] energyRow = energy[row];
+                    for (int col = colTile; col < Math.min(width, colTile + TRANSPOSE_TILE); col++) {
+                        transposed[col][row] = energyRow[col];
+                    }
+                }
+            }
+        }
+        return findSeams(transposed, height, width, count);
+    }
+
+    /**
+     * Traces a seam up from an end point through the cost table, avoiding taken pixels.
+     *
+     * @param end        the column of the seam in the last row
+     * @param seam       receives the column of the seam in every row
+     * @param leftSteps  the extra cost of reaching every cell from up-left, or null for none
+     * @param rightSteps the extra cost of reaching every cell from up-right, or null for none
+     * @param width      the number of live columns
+     * @param height     the number of rows
+     * @return true if a seam clear of every taken pixel was found
+     */
+    private boolean traceFree(int end, int[] seam, double[][] leftSteps, double[][] rightSteps,
+                              int width, int height) {
+        if (backPointers[height - 1][end] == TAKEN) {
+            return false;
+        }
+        seam[height - 1] = end;
+        for (int row = height - 1; row > 0; row--) {
+            int col = seam[row];
+            double[] previous = costTable[row - 1];
+            double[] leftStep = stepRow(leftSteps, row);
+            double[] rightStep = stepRow(rightSteps, row);
+            int best = -1;
+            double bestCost = 0;
+            // same preference order as bestParent: straight up, then up-left, then up-right
+            for (int ref : PARENT_ORDER) {
+                int parent = col + ref;
+                if (parent < 0 || parent >= width || backPointers[row - 1][parent] == TAKEN) {
+                    continue;
+                }
+                // a diagonal step between two taken pixels would cross the seam that owns them
+                if (ref != 0 && backPointers[row - 1][col] == TAKEN && backPointers[row][parent] == TAKEN) {
+                    continue;
+                }
+                double parentCost = previous[parent] + stepCost(leftStep, rightStep, col, ref);
+                if (best < 0 || parentCost < bestCost) {
+                    best = parent;
+                    bestCost = parentCost;
+                }
+            }
+            if (best < 0) {
+                return false;
+            }
+            seam[row - 1] = best;
+        }
+        return true;
+    }
+
+    /**
+     * Fills the back-pointer table for the given energy map.
+     *
+     * @param energy     the energy of every pixel
+     * @param leftSteps  the extra cost of reaching every cell from up-left, or null for none
+     * @param rightSteps the extra cost of reaching every cell from up-right, or null for none
+     * @param width      the number of live columns
+     * @param height     the number of rows
+     * @return the cumulative cost of the last row
+     */
+    private double[] fillTable(double[][] energy, double[][] leftSteps, double[][] rightSteps, int width, int height) {
+        ensureCapacity(width, height);
+        double[] previous = previousValues;
+        double[] current = currentValues;
+
+        // initializing for first row
+        System.arraycopy(energy[0], 0, previous, 0, width);
+
+        // compute values and back pointers for each row
+        for (int row = 1; row < height; row++) {
+            fillRow(previous, current, energy[row], stepRow(leftSteps, row), stepRow(rightSteps, row),
+                    backPointers[row], width);
+            double[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous;
+    }
+
+    /**
+     * Computes the cumulative cost and back pointer of every cell in a row.
+     *
+     * @param previous  the cumulative cost of the row above
+     * @param current   receives the cumulative cost of the row
+     * @param energyRow the energy of the row
+     * @param leftStep  the extra cost of reaching every cell from up-left, or null for none
+     * @param rightStep the extra cost of reaching every cell from up-right, or null for none
+     * @param pointers  receives the back pointer of every cell in the row
+     * @param width     the number of live columns
+     */
+    protected void fillRow(double[] previous, double[] current, double[] energyRow, double[] leftStep,
+                           double[] rightStep, byte[] pointers, int width) {
+        fillRange(previous, current, energyRow, leftStep, rightStep, pointers, 0, width, width);
+    }
+
+    /**
+     * Computes the cumulative cost and back pointer of the cells {@code from} to {@code to - 1} of a row.
+     * Every cell only reads the row above, so disjoint ranges of a row can be filled independently.
+     * Rows without step costs go through {@link RowKernels#DEFAULT}.
+     *
+     * @param previous  the cumulative cost of the row above
+     * @param current   receives the cumulative cost of the row
+     * @param energyRow the energy of the row
+     * @param leftStep  the extra cost of reaching every cell from up-left, or null for none
+     * @param rightStep the extra cost of reaching every cell from up-right, or null for none
+     * @param pointers  receives the back pointer of every cell in the range
+     * @param from      the first column to fill
+     * @param to        one past the last column to fill
+     * @param width     the number of live columns
+     */
+    static void fillRange(double[] previous, double[] current, double[] energyRow, double[] leftStep,
+                          double[] rightStep, byte[] pointers, int from, int to, int width) {
+        if (leftStep == null) {
+            RowKernels.DEFAULT.cumulativeMin(previous, energyRow, current, pointers, from, to, width);
+            return;
+        }
+        for (int col = from; col < to; col++) {
+            byte ref = bestParent(previous, leftStep, rightStep, col, width);
+            current[col] = previous[col + ref] + stepCost(leftStep, rightStep, col, ref) + energyRow[col];
+            pointers[col] = ref;
+        }
+    }
+
+    /**
+     * Picks which of the three cells above a cell continues the cheapest seam.
+     *
+     * @param previous the cumulative cost of the row above
+     * @param col      the column of the cell
+     * @param width    the number of live columns
+     * @return the offset of the chosen cell: -1 for up-left, 0 for straight up, 1 for up-right
+     */
+    static byte bestParent(double[] previous, int col, int width) {
+        double bestSoFar = previous[col];
+        byte ref = 0;
+        if (col > 0 && previous[col - 1] < bestSoFar) {
+            bestSoFar = previous[col - 1];
+            ref = -1;
+        }
+        if (col < width - 1 && previous[col + 1] < bestSoFar) {
+            ref = 1;
+        }
+        return ref;
+    }
+
+    /**
+     * Picks which of the three cells above a cell continues the cheapest seam, counting the
+     * extra cost of the diagonal steps, with the same tie-breaking as
+     * {@link #bestParent(double[], int, int)}.
+     *
+     * @param previous  the cumulative cost of the row above
+     * @param leftStep  the extra cost of reaching every cell of the row from up-left
+     * @param rightStep the extra cost of reaching every cell of the row from up-right
+     * @param col       the column of the cell
+     * @param width     the number of live columns
+     * @return the offset of the chosen cell: -1 for up-left, 0 for straight up, 1 for up-right
+     */
+    static byte bestParent(double[] previous, double[] leftStep, double[] rightStep, int col, int width) {
+        double bestSoFar = previous[col];
+        byte ref = 0;
+        if (col > 0 && previous[col - 1] + leftStep[col] < bestSoFar) {
+            bestSoFar = previous[col - 1] + leftStep[col];
+            ref = -1;
+        }
+        if (col < width - 1 && previous[col + 1] + rightStep[col] < bestSoFar) {
+            ref = 1;
+        }
+        return ref;
+    }
+
+    /**
+     * Retrieves the extra cost of reaching a cell from one of its parents.
+     *
+     * @param leftStep  the extra cost of reaching every cell of the row from up-left, or null for none
+     * @param rightStep the extra cost of reaching every cell of the row from up-right, or null for none
+     * @param col       the column of the cell
+     * @param ref       the offset of the parent: -1 for up-left, 0 for straight up, 1 for up-right
+     * @return the step cost
+     */
+    static double stepCost(double[] leftStep, double[] rightStep, int col, int ref) {
+        if (leftStep == null || ref == 0) {
+            return 0;
+        }
+        return ref < 0 ? leftStep[col] : rightStep[col];
+    }
+
+    /**
+     * Retrieves one row of a step cost map.
+     *
+     * @param steps the step costs, or null for none
+     * @param row   the row
+     * @return the step costs of the row, or null for none
+     */
+    static double[] stepRow(double[][] steps, int row) {
+        return steps == null ? null : steps[row];
+    }
+
+    /**
+     * Picks the cheapest end point in the last row and follows the back pointers up.
+     *
+     * @param backPointers the offset of the chosen cell above every cell
+     * @param lastRow      the cumulative cost of the last row
+     * @param width        the number of live columns
+     * @param height       the number of rows
+     * @return the column of the seam in every row, from top to bottom
+     */
+    static int[] traceBack(byte[][] backPointers, double[] lastRow, int width, int height) {
+        int minIndex = 0;
+        double minValue = lastRow[0];
+        for (int i = 1; i < width; i++) {
+            if (lastRow[i] < minValue) {
+                minIndex = i;
+                minValue = lastRow[i];
+            }
+        }
+        int[] seam = new int[height];
+        seam[height - 1] = minIndex;
+        for (int row = height - 1; row > 0; row--) {
+            seam[row - 1] = seam[row] + backPointers[row][seam[row]];
+        }
+        return seam;
+    }
+
+    /**
+     * Grows the reusable buffers if the image is larger than any seen so far.
+     * The buffers only ever grow, so alternating vertical and horizontal seams
+     * does not reallocate them every time.
+     *
+     * @param width  the number of live columns
+     * @param height the number of rows
+     */
+    private void ensureCapacity(int width, int height) {
+        if (previousValues.length < width) {
+            previousValues = new double[width];
+            currentValues = new double[width];
+        }
+        if (backPointers.length < height || (height > 0 && backPointers[0].length < width)) {
+            backPointers = new byte[Math.max(height, backPointers.length)]
+                    [Math.max(width, backPointers.length > 0 ? backPointers[0].length : 0)];
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package uk.ac.nulondon;
+
+/**
+ * The Sobel gradient magnitude of the luminance, as computed by {@link Image#energyAt(int, int)}.
+ * Whole rows go through {@link RowKernels#DEFAULT}, so they are vectorised where possible.
+ */
+public class SobelCost implements CostFunction {
+
+    @Override
+    public void fill(int[] rgbUp, int[] rgb, int[] rgbDown, short[] lumaUp, short[] luma, short[] lumaDown,
+                     int width, int from, int to, double[] out) {
+        if (from == 0 && to == width) {
+            RowKernels.DEFAULT.sobel(lumaUp, luma, lumaDown, width, out);
+            return;
+        }
+        for (int col = from; col < to; col++) {
+            out[col] = Image.energyFromLuma(lumaUp, luma, lumaDown, col);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "sobel";
+    }
+}
@@ -1,3 +1,5 @@
+package uk.ac.nulondon;
+
 import java.awt.*;
 import java.io.IOException;
 import java.util.InputMismatchException;
@@ -80,11 +82,11 @@ public class UI {
     private static void confirmAndEdit(Operation operation) throws IOException {
         String confirm = getUserInput();
         if (confirm.equalsIgnoreCase("y")) {
+            long start = System.nanoTime();
             switch (operation) {
                 case DELETE:
                     // make changes, export edit result image
                     imageProcesser.removeSeamEnergy();
-                    imageProcesser.save("tempIMG_0" + editCount + ".png");
                     imageProcesser.exportImage("tempIMG_0" + editCount + ".png");
                     editCount++;
                     break;
@@ -100,16 +102,17 @@ public class UI {
                     editCount++;
                     break;
                 case RANDOM_HIGHLIGHT:
-                    imageProcesser.save("tempIMG_0" + editCount + ".png");
-                    imageProcesser.highlightSeam(imageProcesser.getImage().getSeam(), Color.red);
+                    imageProcesser.highlightSeam(imageProcesser.getImage().getSeam(), Color.red, Operation.RANDOM_HIGHLIGHT);
                     imageProcesser.exportImage("tempIMG_0" + editCount + ".png");
                     editCount++;
                     break;
                 case BLUE_HIGHLIGHT:;
-                    imageProcesser.save("tempIMG_0" + editCount + ".png");
-                    imageProcesser.highlightSeam(imageProcesser.getImage().getSeam(), Color.BLUE);
+                    imageProcesser.highlightSeam(imageProcesser.getImage().getSeam(CostFunction.BLUENESS), Color.BLUE,
+                            Operation.BLUE_HIGHLIGHT);
                     imageProcesser.exportImage("tempIMG_0" + editCount + ".png");
             }
+            // the images are encoded in the background, this is the edit alone
+            System.out.printf("Edit done in %d ms%n", (System.nanoTime() - start) / 1_000_000);
         } else if (confirm.equalsIgnoreCase("n")) {
             // if we're cancelling an undo, we need to un-highlight
             if (operation.equals(Operation.DELETE)) {
@@ -177,8 +180,13 @@ public class UI {
             }
         }
 
-        // After the user exits, export the final image
+        // After the user exits, export the final image and wait for every queued file
         imageProcesser.exportImage("newImg.png");
+        imageProcesser.close();
+        AsyncExporter exporter = imageProcesser.getExporter();
+        System.out.printf("%d images written (%d superseded before writing), %d ms spent encoding%n",
+                exporter.getWritten(), exporter.getSuperseded(), exporter.getEncodeNanos() / 1_000_000);
+        CarveMetrics.DEFAULT.report(new LogReporter(System.out));
         scan.close();
     }
 }
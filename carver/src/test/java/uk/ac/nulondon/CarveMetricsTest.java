@@ -0,0 +1,59 @@
+package uk.ac.nulondon;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that {@link CarveMetrics.Timer} records its phase whether or not Flight Recorder is on,
+ * and commits a {@link CarveEvent} only while a recording has it enabled.
+ */
+class CarveMetricsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void timersRecordWithAndWithoutFlightRecorder() throws IOException {
+        CarveMetrics metrics = new CarveMetrics();
+        metrics.start(CarvePhase.ENERGY).stop(10, 20, 200, 0);
+
+        Path file = directory.resolve("carve.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(CarveEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            metrics.start(CarvePhase.SEAM_REMOVAL).stop(30, 40, 40, 1);
+            recording.stop();
+            recording.dump(file);
+        }
+        metrics.start(CarvePhase.ENERGY).stop(10, 20, 200, 0);
+
+        for (CarveMetrics.PhaseStats stats : metrics.snapshot()) {
+            if (stats.getPhase() == CarvePhase.ENERGY) {
+                assertEquals(2, stats.getCount());
+                assertEquals(400, stats.getPixels());
+            } else if (stats.getPhase() == CarvePhase.SEAM_REMOVAL) {
+                assertEquals(1, stats.getCount());
+            }
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("imagecompression.Carve"))
+                .collect(Collectors.toList());
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("SEAM_REMOVAL", event.getString("phase"));
+        assertEquals(30, event.getInt("width"));
+        assertEquals(40, event.getLong("pixels"));
+        assertEquals(1, event.getInt("seams"));
+    }
+}
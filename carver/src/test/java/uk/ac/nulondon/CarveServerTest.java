@@ -0,0 +1,165 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the answers of {@link CarveServer} over HTTP, on a server with one worker and one
+ * queue slot listening on a free port.
+ */
+class CarveServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private CarveServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new CarveServer(0, 1, 1, CarveMode.EXACT);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void carvesAnImageToAPng() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = post("/carve?width=" + (TestImages.WIDTH - 10), png(TestImages.synthetic()));
+        assertEquals(200, response.statusCode());
+        assertEquals("image/png", response.headers().firstValue("Content-Type").orElse(null));
+        BufferedImage carved = ImageIO.read(new ByteArrayInputStream(response.body()));
+        assertEquals(TestImages.WIDTH - 10, carved.getWidth());
+        assertEquals(TestImages.HEIGHT, carved.getHeight());
+    }
+
+    @Test
+    void rejectsBadRequests() throws IOException, InterruptedException {
+        HttpResponse<byte[]> badMode = post("/carve?width=10&mode=quick", png(TestImages.synthetic()));
+        assertEquals(400, badMode.statusCode());
+        assertEquals("mode must be exact, fast or pyramid\n", new String(badMode.body(), StandardCharsets.UTF_8));
+
+        HttpResponse<byte[]> notAnImage = post("/carve?width=10", "not an image".getBytes(StandardCharsets.UTF_8));
+        assertEquals(400, notAnImage.statusCode());
+        assertEquals("The body is not an image\n", new String(notAnImage.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void answers503WhenTheQueueIsFull() throws IOException, InterruptedException {
+        // each held request announces a body it never sends, so the worker blocks reading it
+        try (Socket running = holdRequest(); Socket queued = holdRequest()) {
+            waitForMetric("in_flight 1");
+            waitForMetric("queued 1");
+            HttpResponse<byte[]> response = post("/carve?width=10", png(TestImages.synthetic()));
+            assertEquals(503, response.statusCode());
+            assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+        }
+        String metrics = metrics();
+        assertTrue(metrics.contains("requests 3\n"), metrics);
+        assertTrue(metrics.contains("rejected 1\n"), metrics);
+    }
+
+    @Test
+    void reportsMetrics() throws IOException, InterruptedException {
+        post("/carve?width=" + (TestImages.WIDTH - 5), png(TestImages.synthetic()));
+        post("/carve?width=10&mode=quick", new byte[0]);
+        String metrics = metrics();
+        for (String line : new String[]{"requests 2\n", "rejected 0\n", "failed 1\n", "in_flight 0\n",
+                "queued 0\n", "completed 1\n", "# TYPE carve_phase_seconds summary\n"}) {
+            assertTrue(metrics.contains(line), "missing " + line.trim() + " in\n" + metrics);
+        }
+        assertTrue(metrics.contains("latency_p50_ms "), metrics);
+    }
+
+    /**
+     * Posts a body to the server.
+     *
+     * @param path the path and query
+     * @param body the request body
+     * @return the response
+     */
+    private HttpResponse<byte[]> post(String path, byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Fetches the metrics of the server.
+     *
+     * @return the body of {@code /metrics}
+     */
+    private String metrics() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return response.body();
+    }
+
+    /**
+     * Polls the metrics until a line appears, so a test can wait for the server to reach a state.
+     *
+     * @param line the line to wait for, without its newline
+     */
+    private void waitForMetric(String line) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!metrics().contains(line + "\n")) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for " + line);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Opens a carve request whose headers promise a body that is never sent.
+     *
+     * @return the open connection, to close when the request may end
+     */
+    private Socket holdRequest() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        OutputStream out = socket.getOutputStream();
+        out.write(("POST /carve?width=10 HTTP/1.1\r\nHost: loopback\r\nContent-Length: 1000\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return socket;
+    }
+
+    /**
+     * Builds the address of a path on the server.
+     *
+     * @param path the path and query
+     * @return the URI
+     */
+    private URI uri(String path) {
+        return URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + path);
+    }
+
+    /**
+     * Encodes an image as PNG.
+     *
+     * @param image the image
+     * @return the PNG bytes
+     */
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,68 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that {@link EnergyGrid} finds a cheapest seam, checked against every path of small
+ * grids, and that searching a grid again with its kept scratch arrays finds the same seam.
+ */
+class EnergyGridTest {
+
+    @Test
+    void seamsAreCheapestAndRepeatable() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 50; trial++) {
+            int height = 1 + random.nextInt(6);
+            int width = 1 + random.nextInt(6);
+            int[][] values = new int[height][width];
+            for (int[] row : values) {
+                for (int col = 0; col < width; col++) {
+                    row[col] = random.nextInt(10);
+                }
+            }
+            EnergyGrid grid = new EnergyGrid(values);
+            int[] seam = grid.getSeam();
+            assertEquals(height, seam.length);
+            for (int row = 1; row < height; row++) {
+                assertTrue(Math.abs(seam[row] - seam[row - 1]) <= 1, "seam is not connected at row " + row);
+            }
+            int total = 0;
+            for (int row = 0; row < height; row++) {
+                total += values[row][seam[row]];
+            }
+            int cheapest = Integer.MAX_VALUE;
+            for (int col = 0; col < width; col++) {
+                cheapest = Math.min(cheapest, cheapestFrom(values, 0, col));
+            }
+            assertEquals(cheapest, total, "trial " + trial);
+            assertArrayEquals(seam, grid.getSeam(), "trial " + trial + " searched again");
+        }
+    }
+
+    /**
+     * Finds the cheapest total of every path from a cell down to the last row, by trying them all.
+     *
+     * @param values the energy of every cell
+     * @param row    the row of the cell
+     * @param col    the column of the cell
+     * @return the total energy of the cheapest path
+     */
+    static int cheapestFrom(int[][] values, int row, int col) {
+        if (row == values.length - 1) {
+            return values[row][col];
+        }
+        int best = Integer.MAX_VALUE;
+        for (int next = col - 1; next <= col + 1; next++) {
+            if (next >= 0 && next < values[0].length) {
+                best = Math.min(best, cheapestFrom(values, row + 1, next));
+            }
+        }
+        return values[row][col] + best;
+    }
+}
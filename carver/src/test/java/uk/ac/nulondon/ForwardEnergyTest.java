@@ -0,0 +1,130 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the seam searches under {@link CostFunction#FORWARD} find seams as cheap as a plain
+ * dynamic program over the definition of forward energy.
+ */
+class ForwardEnergyTest {
+
+    /**
+     * Reads the luminance of a pixel as forward energy defines it, the sum of its components,
+     * with pixels outside the image counting as black.
+     *
+     * @param image the image
+     * @param row   the row of the pixel
+     * @param col   the column of the pixel
+     * @return the luminance of the pixel
+     */
+    static int luminance(BufferedImage image, int row, int col) {
+        if (col < 0 || col >= image.getWidth()) {
+            return 0;
+        }
+        int rgb = image.getRGB(col, row);
+        return ((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF);
+    }
+
+    /**
+     * Computes the forward energy of removing a pixel reached from a column of the row above:
+     * {@code C_U}, plus the step to the left or right neighbor if the seam moves sideways.
+     *
+     * @param image    the image
+     * @param row      the row of the pixel
+     * @param col      the column of the pixel
+     * @param previous the column of the seam in the row above
+     * @return the cost of the pixel
+     */
+    static double forwardCost(BufferedImage image, int row, int col, int previous) {
+        double cost = Math.abs(luminance(image, row, col + 1) - luminance(image, row, col - 1));
+        if (previous < col) {
+            cost += Math.abs(luminance(image, row - 1, col) - luminance(image, row, col - 1));
+        } else if (previous > col) {
+            cost += Math.abs(luminance(image, row - 1, col) - luminance(image, row, col + 1));
+        }
+        return cost;
+    }
+
+    /**
+     * Finds the lowest forward energy of any vertical seam with a plain dynamic program straight
+     * from the definition, independent of the cost function and seam solvers.
+     *
+     * @param image the image
+     * @return the total cost of the cheapest seam
+     */
+    static double cheapestForward(BufferedImage image) {
+        int width = image.getWidth();
+        double[] costs = new double[width];
+        for (int col = 0; col < width; col++) {
+            costs[col] = forwardCost(image, 0, col, col);
+        }
+        for (int row = 1; row < image.getHeight(); row++) {
+            double[] next = new double[width];
+            for (int col = 0; col < width; col++) {
+                next[col] = Double.POSITIVE_INFINITY;
+                for (int previous = Math.max(0, col - 1); previous <= Math.min(width - 1, col + 1); previous++) {
+                    next[col] = Math.min(next[col], costs[previous] + forwardCost(image, row, col, previous));
+                }
+            }
+            costs = next;
+        }
+        return Arrays.stream(costs).min().getAsDouble();
+    }
+
+    /**
+     * Adds up the forward energy of a vertical seam.
+     *
+     * @param image the image
+     * @param seam  the column of the seam in every row
+     * @return the total cost of the seam
+     */
+    static double forwardTotal(BufferedImage image, int[] seam) {
+        double total = forwardCost(image, 0, seam[0], seam[0]);
+        for (int row = 1; row < seam.length; row++) {
+            total += forwardCost(image, row, seam[row], seam[row - 1]);
+        }
+        return total;
+    }
+
+    @Test
+    void incrementalSeamsAreTheCheapest() {
+        Image image = new Image(TestImages.synthetic());
+        image.setCostFunction(CostFunction.FORWARD);
+        image.setIncrementalSeams(true);
+        for (int i = 0; i < 25; i++) {
+            BufferedImage current = image.toBufferedImage();
+            int[] seam = image.getSeam();
+            assertEquals(cheapestForward(current), forwardTotal(current, seam), 1e-9, "seam " + i);
+            image.removeSeam(seam);
+        }
+    }
+
+    @Test
+    void fullBandPyramidSeamIsTheCheapest() {
+        BufferedImage source = TestImages.synthetic();
+        Image pyramid = new Image(source);
+        pyramid.setCostFunction(CostFunction.FORWARD);
+        pyramid.setPyramidBand(TestImages.WIDTH);
+        assertEquals(cheapestForward(source), forwardTotal(source, pyramid.getApproximateSeam()), 1e-9);
+    }
+
+    @Test
+    void parallelSeamIsTheCheapest() {
+        BufferedImage source = TestImages.synthetic();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Image parallel = new Image(source);
+            parallel.setCostFunction(CostFunction.FORWARD);
+            parallel.setSeamSolver(new ParallelSeamSolver(pool, 8));
+            assertEquals(cheapestForward(source), forwardTotal(source, parallel.getSeam()), 1e-9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
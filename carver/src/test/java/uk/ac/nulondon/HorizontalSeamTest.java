@@ -0,0 +1,59 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Tests that horizontal seams, found and removed on the row-major storage, are the vertical
+ * seams of the transposed image.
+ */
+class HorizontalSeamTest {
+
+    @Test
+    void singleSeamsMatchTheTransposedImage() {
+        BufferedImage source = TestImages.synthetic();
+        Image image = new Image(source);
+        Image transposed = new Image(TestImages.transpose(source));
+        for (int i = 0; i < 40; i++) {
+            int[] seam = image.getHorizontalSeam();
+            assertArrayEquals(transposed.getSeam(), seam, "horizontal seam " + i);
+            assertArrayEquals(TestImages.fresh(image).getHorizontalSeam(), seam,
+                    "horizontal seam " + i + " against a fresh image");
+            image.removeHorizontalSeam(seam);
+            transposed.removeSeam(seam);
+        }
+        TestImages.assertSameImage(TestImages.transpose(transposed.toBufferedImage()), image.toBufferedImage(),
+                "single seams");
+    }
+
+    @Test
+    void batchesMatchTheTransposedImage() {
+        BufferedImage source = TestImages.synthetic();
+        Image image = new Image(source);
+        Image transposed = new Image(TestImages.transpose(source));
+        for (int i = 0; i < 3; i++) {
+            int[][] seams = image.getHorizontalSeams(7);
+            assertArrayEquals(transposed.getSeams(7), seams, "horizontal batch " + i);
+            image.removeHorizontalSeams(seams);
+            transposed.removeSeams(seams);
+        }
+        TestImages.assertSameImage(TestImages.transpose(transposed.toBufferedImage()), image.toBufferedImage(),
+                "batches");
+    }
+
+    @Test
+    void carvingTheHeightRemovesTheCheapestSeams() {
+        BufferedImage source = TestImages.synthetic();
+        int targetHeight = TestImages.HEIGHT - 33;
+        Image carved = new Image(source);
+        carved.carveToSize(TestImages.WIDTH, targetHeight, CarveMode.EXACT);
+        Image repeated = new Image(source);
+        while (repeated.getHeight() > targetHeight) {
+            repeated.removeHorizontalSeam(repeated.getHorizontalSeam());
+        }
+        TestImages.assertSameImage(repeated.toBufferedImage(), carved.toBufferedImage(), "carving the height");
+    }
+}
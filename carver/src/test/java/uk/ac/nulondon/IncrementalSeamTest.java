@@ -0,0 +1,47 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that keeping the cost table between removals, and patching the energy map around each
+ * seam or edited pixel, finds the same seams as recomputing both from scratch.
+ */
+class IncrementalSeamTest {
+
+    @Test
+    void incrementalSeamsMatchAFreshSearch() {
+        BufferedImage source = TestImages.synthetic();
+        for (CostFunction cost : CostFunction.ALL) {
+            Image image = new Image(source);
+            image.setCostFunction(cost);
+            image.setIncrementalSeams(true);
+            for (int i = 0; i < 60; i++) {
+                int[] seam = image.getSeam();
+                assertArrayEquals(TestImages.fresh(image).getSeam(), seam, cost.name() + ": seam " + i);
+                image.removeSeam(seam);
+            }
+        }
+    }
+
+    @Test
+    void editedPixelsPatchTheEnergyMap() {
+        Image image = new Image(TestImages.synthetic());
+        image.computeEnergyMap();
+        long cells = (long) TestImages.WIDTH * TestImages.HEIGHT;
+        // an inner pixel changes the energy of its 3x3 neighborhood, a corner pixel of 2x2
+        int[][] edits = {{40, 70, 9}, {0, 0, 4}, {TestImages.HEIGHT - 1, TestImages.WIDTH - 1, 4}};
+        for (int[] edit : edits) {
+            long recomputed = image.getEnergyRecomputed();
+            long reused = image.getEnergyReused();
+            image.setRGB(edit[0], edit[1], 0xFFFFFF);
+            assertEquals(edit[2], image.getEnergyRecomputed() - recomputed, "recomputed at " + edit[0] + "," + edit[1]);
+            assertEquals(cells - edit[2], image.getEnergyReused() - reused, "reused at " + edit[0] + "," + edit[1]);
+            assertArrayEquals(TestImages.fresh(image).getSeam(), image.getSeam(), "seam after " + edit[0] + "," + edit[1]);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that inserting seams is undone by removing them, and that the energy patched around each
+ * change finds the same seam as a fresh image.
+ */
+class InsertSeamTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void removingABatchInsertRestoresTheImage() {
+        BufferedImage source = TestImages.synthetic();
+        Image image = new Image(source);
+        int[][] inserted = image.insertSeams(image.getSeams(20));
+        assertEquals(TestImages.WIDTH + 20, image.getWidth());
+        assertArrayEquals(TestImages.fresh(image).getSeam(), image.getSeam(), "the seam after the batch insert");
+        for (int i = inserted.length - 1; i >= 0; i--) {
+            image.removeSeam(inserted[i]);
+        }
+        TestImages.assertSameImage(source, image.toBufferedImage(), "batch insert then removal");
+    }
+
+    @Test
+    void reinsertingARemovedSeamRestoresTheImage() {
+        BufferedImage source = TestImages.synthetic();
+        Image image = new Image(source);
+        int[] seam = image.getSeam();
+        int[] colors = Edit.colorsOf(image, seam);
+        image.removeSeam(seam);
+        image.insertSeam(seam, colors);
+        TestImages.assertSameImage(source, image.toBufferedImage(), "removal then insert");
+        assertArrayEquals(new Image(source).getSeam(), image.getSeam(), "the seam after reinserting");
+    }
+
+    @Test
+    void undoingAnInsertOverSeveralRoundsRestoresTheImage() throws IOException {
+        BufferedImage source = TestImages.synthetic();
+        File file = directory.resolve("source.png").toFile();
+        ImageIO.write(source, "png", file);
+        ImageProcessing processing = new ImageProcessing();
+        try {
+            processing.load(file.getPath());
+            processing.insertSeams(TestImages.WIDTH - 37);
+            assertEquals(2 * TestImages.WIDTH - 37, processing.getImage().getWidth());
+            processing.undo();
+            TestImages.assertSameImage(source, processing.getImage().toBufferedImage(), "insert then undo");
+        } finally {
+            processing.close();
+        }
+    }
+}
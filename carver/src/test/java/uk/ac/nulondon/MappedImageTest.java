@@ -0,0 +1,52 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that carving a raw pixel file through {@link MappedImage} finds the same seams, and
+ * leaves the same pixels, as carving the decoded image with {@link Image}.
+ */
+class MappedImageTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedSeamsMatchTheHeapImage() throws IOException {
+        BufferedImage source = TestImages.synthetic();
+        Image image = new Image(source);
+        try (MappedImage mapped = MappedImage.create(directory.resolve("synthetic.raw"), source)) {
+            for (int i = 0; i < 40; i++) {
+                int[] seam = image.getSeam();
+                assertArrayEquals(seam, mapped.findSeam(), "seam " + i);
+                image.removeSeam(seam);
+                mapped.removeSeam(seam);
+            }
+            TestImages.assertSameImage(image.toBufferedImage(), mapped.toBufferedImage(), "carved pixels");
+        }
+    }
+
+    @Test
+    void reopenedFileKeepsTheCarvedPixels() throws IOException {
+        BufferedImage source = TestImages.synthetic();
+        Path file = directory.resolve("synthetic.raw");
+        BufferedImage carved;
+        try (MappedImage mapped = MappedImage.create(file, source)) {
+            mapped.carveToWidth(TestImages.WIDTH - 25);
+            carved = mapped.toBufferedImage();
+        }
+        try (MappedImage reopened = MappedImage.open(file)) {
+            assertEquals(TestImages.WIDTH - 25, reopened.getWidth());
+            assertEquals(TestImages.HEIGHT, reopened.getHeight());
+            TestImages.assertSameImage(carved, reopened.toBufferedImage(), "reopened pixels");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the energy map filled in parallel row stripes is bit for bit the map filled one
+ * row after another on a single thread.
+ */
+class ParallelEnergyTest {
+
+    /**
+     * The width of the image, which with the height is above the parallel threshold.
+     */
+    private static final int WIDTH = 613;
+
+    /**
+     * The height of the image, many stripes tall with a partial stripe at the bottom.
+     */
+    private static final int HEIGHT = 437;
+
+    @Test
+    void stripedMapMatchesTheSequentialMap() throws InterruptedException, ExecutionException {
+        BufferedImage source = TestImages.synthetic(WIDTH, HEIGHT);
+        // a parallel stream runs on the pool it is started from, so the stripes are filled by four threads
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (CostFunction cost : CostFunction.ALL) {
+                Image image = new Image(source);
+                image.setCostFunction(cost);
+                double[][] striped = pool.submit(image::computeEnergyMap).get();
+
+                Image reference = new Image(source);
+                reference.setCostFunction(cost);
+                double[][] sequential = reference.computeEnergyMap();
+                for (double[] row : sequential) {
+                    Arrays.fill(row, Double.NaN);
+                }
+                reference.computeEnergyRows(0, HEIGHT);
+
+                assertTrue(Arrays.deepEquals(sequential, striped), cost.name());
+                if (cost == CostFunction.SOBEL) {
+                    for (int row = 0; row < HEIGHT; row++) {
+                        for (int col = 0; col < WIDTH; col++) {
+                            assertEquals(image.energyAt(row, col), striped[row][col], "energy at " + row + "," + col);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
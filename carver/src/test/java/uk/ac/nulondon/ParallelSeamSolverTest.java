@@ -0,0 +1,74 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Tests that {@link ParallelSeamSolver} finds exactly the seams of the sequential solver.
+ * A small threshold makes every row split into many column ranges.
+ */
+class ParallelSeamSolverTest {
+
+    /**
+     * The pool sizes checked.
+     */
+    private static final int[] THREADS = {2, 3, 4};
+
+    /**
+     * The number of columns below which the solver stops splitting a range.
+     */
+    private static final int THRESHOLD = 4;
+
+    @Test
+    void seamsMatchTheSequentialSolverAcrossRemovals() {
+        BufferedImage source = TestImages.synthetic();
+        for (int threads : THREADS) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (CostFunction cost : CostFunction.ALL) {
+                    Image sequential = new Image(source);
+                    sequential.setCostFunction(cost);
+                    Image parallel = new Image(source);
+                    parallel.setCostFunction(cost);
+                    parallel.setSeamSolver(new ParallelSeamSolver(pool, THRESHOLD));
+                    for (int i = 0; i < 30; i++) {
+                        int[] seam = sequential.getSeam();
+                        assertArrayEquals(seam, parallel.getSeam(),
+                                cost.name() + " on " + threads + " threads: seam " + i);
+                        sequential.removeSeam(seam);
+                        parallel.removeSeam(seam);
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void batchesMatchTheSequentialSolver() {
+        BufferedImage source = TestImages.synthetic();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (CostFunction cost : CostFunction.ALL) {
+                Image sequential = new Image(source);
+                sequential.setCostFunction(cost);
+                Image parallel = new Image(source);
+                parallel.setCostFunction(cost);
+                parallel.setSeamSolver(new ParallelSeamSolver(pool, THRESHOLD));
+                for (int i = 0; i < 3; i++) {
+                    int[][] seams = sequential.getSeams(7);
+                    assertArrayEquals(seams, parallel.getSeams(7), cost.name() + ": batch " + i);
+                    sequential.removeSeams(seams);
+                    parallel.removeSeams(seams);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Tests that a precomputed removal order gives the pixels of carving the image seam by seam.
+ */
+class RetargetableImageTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Compares every width in exact and pyramid mode, also after a save and load.
+     */
+    @Test
+    void everyWidthMatchesCarving() throws IOException {
+        BufferedImage source = TestImages.synthetic();
+        for (CarveMode mode : new CarveMode[]{CarveMode.EXACT, CarveMode.PYRAMID}) {
+            RetargetableImage retargetable = RetargetableImage.precompute(source, 40, mode);
+            for (int width : new int[]{TestImages.WIDTH, TestImages.WIDTH - 1, 120, 77, 40}) {
+                Image carved = new Image(source);
+                carved.carveToWidth(width, mode);
+                TestImages.assertSameImage(carved.toBufferedImage(), retargetable.toWidth(width), mode + " at " + width);
+            }
+            Path file = directory.resolve(mode + ".rtg");
+            retargetable.save(file);
+            TestImages.assertSameImage(retargetable.toWidth(100), RetargetableImage.load(file).toWidth(100),
+                    mode + " after loading");
+        }
+    }
+
+    /**
+     * In fast mode only the narrowest width is compared, since the batches depend on the width carved to.
+     */
+    @Test
+    void fastModeMatchesCarvingAtTheNarrowestWidth() {
+        BufferedImage source = TestImages.synthetic();
+        RetargetableImage fast = RetargetableImage.precompute(source, 10, CarveMode.FAST);
+        Image carved = new Image(source);
+        carved.carveToWidth(10, CarveMode.FAST);
+        TestImages.assertSameImage(carved.toBufferedImage(), fast.toWidth(10), "FAST at 10");
+    }
+}
@@ -0,0 +1,105 @@
+package uk.ac.nulondon;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Images and comparisons shared by the tests.
+ */
+final class TestImages {
+
+    /**
+     * The width of the synthetic image most tests carve.
+     */
+    static final int WIDTH = 157;
+
+    /**
+     * The height of the synthetic image most tests carve.
+     */
+    static final int HEIGHT = 93;
+
+    private TestImages() {
+    }
+
+    /**
+     * Builds a reproducible image with smooth gradients and some noise,
+     * so the energy map is neither flat nor pure noise.
+     *
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @return the synthetic image
+     */
+    static BufferedImage synthetic(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(16)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(16)) & 0xFF;
+                int b = ((x ^ y) & 0x7F) + random.nextInt(16);
+                img.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Builds the {@link #WIDTH} by {@link #HEIGHT} synthetic image.
+     *
+     * @return the synthetic image
+     */
+    static BufferedImage synthetic() {
+        return synthetic(WIDTH, HEIGHT);
+    }
+
+    /**
+     * Asserts that two images have the same size and pixels.
+     *
+     * @param expected the image the plain computation gives
+     * @param actual   the image the shortcut gives
+     * @param what     the name of the comparison, for the message
+     */
+    static void assertSameImage(BufferedImage expected, BufferedImage actual, String what) {
+        assertEquals(expected.getWidth() + "x" + expected.getHeight(), actual.getWidth() + "x" + actual.getHeight(),
+                what + ": size");
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if ((expected.getRGB(x, y) & 0xFFFFFF) != (actual.getRGB(x, y) & 0xFFFFFF)) {
+                    assertEquals(expected.getRGB(x, y) & 0xFFFFFF, actual.getRGB(x, y) & 0xFFFFFF,
+                            what + ": pixel " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds an image from the current pixels of another, so its energy map and cost table are
+     * computed from scratch.
+     *
+     * @param image the image to copy
+     * @return a fresh image with the same pixels and cost function
+     */
+    static Image fresh(Image image) {
+        Image copy = new Image(image.toBufferedImage());
+        copy.setCostFunction(image.getCostFunction());
+        return copy;
+    }
+
+    /**
+     * Swaps the rows and columns of an image.
+     *
+     * @param image the image
+     * @return the transposed image
+     */
+    static BufferedImage transpose(BufferedImage image) {
+        BufferedImage transposed = new BufferedImage(image.getHeight(), image.getWidth(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                transposed.setRGB(y, x, image.getRGB(x, y));
+            }
+        }
+        return transposed;
+    }
+}
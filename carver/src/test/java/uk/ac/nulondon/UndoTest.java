@@ -0,0 +1,52 @@
+package uk.ac.nulondon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Tests that undoing edits through the history restores the original image.
+ */
+class UndoTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Undoes a highlight, a single removal and a batch of removals in every mode, and expects the
+     * original pixels back and the seam a fresh image finds.
+     */
+    @Test
+    void undoRestoresTheOriginal() throws IOException {
+        BufferedImage source = TestImages.synthetic();
+        File file = directory.resolve("source.png").toFile();
+        ImageIO.write(source, "png", file);
+        for (CarveMode mode : CarveMode.values()) {
+            ImageProcessing processing = new ImageProcessing();
+            try {
+                processing.setIncrementalSeams(true);
+                processing.load(file.getPath());
+                Image image = processing.getImage();
+                processing.highlightSeam(image.getSeam(), Color.red, Operation.RANDOM_HIGHLIGHT);
+                processing.removeSeamEnergy();
+                processing.removeSeams(40, mode);
+                processing.removeSeamEnergy();
+                for (int i = 0; i < 4; i++) {
+                    processing.undo();
+                }
+                TestImages.assertSameImage(source, image.toBufferedImage(), mode + " undo");
+                assertArrayEquals(new Image(source).getSeam(), image.getSeam(), mode + ": the seam after undo");
+            } finally {
+                processing.close();
+            }
+        }
+    }
+}
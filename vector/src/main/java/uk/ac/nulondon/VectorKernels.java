@@ -0,0 +1,152 @@
+package uk.ac.nulondon;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementation of {@link RowKernels} on the incubating Java Vector API.
+ * Needs {@code --add-modules jdk.incubator.vector} at compile and run time, so it is kept
+ * in its own {@code vector} module, compiled against the {@code carver} module;
+ * {@link RowKernels#load()} falls back to {@link ScalarKernels} when it is missing.
+ * The lanes do the same IEEE operations in the same order as the scalar code,
+ * so the results are bit-identical.
+ */
+public class VectorKernels implements RowKernels {
+
+    /**
+     * The double species every kernel computes in.
+     */
+    private final VectorSpecies<Double> doubles;
+
+    /**
+     * Ints with as many lanes as {@link #doubles}, so a converted vector fills a double vector exactly.
+     */
+    private final VectorSpecies<Integer> ints;
+
+    /**
+     * Shorts with as many lanes as {@link #doubles}, for loading luminance.
+     */
+    private final VectorSpecies<Short> shorts;
+
+    /**
+     * Bytes with as many lanes as {@link #doubles}, so one store writes the back pointer of every
+     * double lane; null if no byte shape has that many lanes, and the pointers are then left to
+     * the scalar code.
+     */
+    private final VectorSpecies<Byte> bytes;
+
+    private final DoubleVector zero;
+
+    private static final ScalarKernels SCALAR = new ScalarKernels();
+
+    /**
+     * Creates the kernels on the preferred double species of the platform.
+     */
+    public VectorKernels() {
+        this(DoubleVector.SPECIES_PREFERRED);
+    }
+
+    /**
+     * Creates the kernels on a given double species, so every shape can be checked on any machine.
+     *
+     * @param doubles the double species, at least 256 bits wide
+     */
+    VectorKernels(VectorSpecies<Double> doubles) {
+        this.doubles = doubles;
+        ints = IntVector.SPECIES_PREFERRED.withShape(VectorShape.forBitSize(doubles.vectorBitSize() / 2));
+        shorts = ShortVector.SPECIES_PREFERRED.withShape(VectorShape.forBitSize(doubles.vectorBitSize() / 4));
+        bytes = bytesPerLane(doubles.length());
+        zero = DoubleVector.zero(doubles);
+    }
+
+    /**
+     * Finds the byte species with a given number of lanes.
+     *
+     * @param lanes the number of lanes
+     * @return the species, or null if no byte shape has that many lanes
+     */
+    private static VectorSpecies<Byte> bytesPerLane(int lanes) {
+        try {
+            VectorSpecies<Byte> species = ByteVector.SPECIES_64.withShape(VectorShape.forBitSize(lanes * Byte.SIZE));
+            return species.length() == lanes ? species : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void sobel(short[] up, short[] middle, short[] down, int width, double[] out) {
+        int col = 0;
+        for (int bound = doubles.loopBound(width); col < bound; col += doubles.length()) {
+            IntVector upLeft = widen(up, col);
+            IntVector upMiddle = widen(up, col + 1);
+            IntVector upRight = widen(up, col + 2);
+            IntVector left = widen(middle, col);
+            IntVector right = widen(middle, col + 2);
+            IntVector downLeft = widen(down, col);
+            IntVector downMiddle = widen(down, col + 1);
+            IntVector downRight = widen(down, col + 2);
+            IntVector horizontal = upLeft.add(left.mul(2)).add(downLeft)
+                    .sub(upRight.add(right.mul(2)).add(downRight));
+            IntVector vertical = upLeft.add(upMiddle.mul(2)).add(upRight)
+                    .sub(downLeft.add(downMiddle.mul(2)).add(downRight));
+            IntVector squared = horizontal.mul(horizontal).add(vertical.mul(vertical));
+            ((DoubleVector) squared.convertShape(VectorOperators.I2D, doubles, 0))
+                    .sqrt().div(3.0).intoArray(out, col);
+        }
+        for (; col < width; col++) {
+            out[col] = Image.energyFromLuma(up, middle, down, col);
+        }
+    }
+
+    /**
+     * Loads luminance values into int lanes, one per double lane.
+     *
+     * @param row    the padded luminance row
+     * @param offset the index of the first value to load
+     * @return the widened values
+     */
+    private IntVector widen(short[] row, int offset) {
+        return (IntVector) ShortVector.fromArray(shorts, row, offset).convertShape(VectorOperators.S2I, ints, 0);
+    }
+
+    @Override
+    public void cumulativeMin(double[] previous, double[] energyRow, double[] current, byte[] pointers,
+                              int from, int to, int width) {
+        // the edge columns miss a parent, leave them to the scalar code
+        int start = Math.max(from, 1);
+        int end = Math.min(to, width - 1);
+        // without a byte species of the same lane count the pointers would need a partial store,
+        // which is slower than scalar code, or a wider one, which would leave lanes unwritten
+        if (bytes == null || end - start < doubles.length()) {
+            SCALAR.cumulativeMin(previous, energyRow, current, pointers, from, to, width);
+            return;
+        }
+        SCALAR.cumulativeMin(previous, energyRow, current, pointers, from, start, width);
+        int col = start;
+        for (int bound = start + doubles.loopBound(end - start); col < bound; col += doubles.length()) {
+            DoubleVector best = DoubleVector.fromArray(doubles, previous, col);
+            DoubleVector upLeft = DoubleVector.fromArray(doubles, previous, col - 1);
+            DoubleVector upRight = DoubleVector.fromArray(doubles, previous, col + 1);
+            VectorMask<Double> takeLeft = upLeft.lt(best);
+            best = best.blend(upLeft, takeLeft);
+            VectorMask<Double> takeRight = upRight.lt(best);
+            best = best.blend(upRight, takeRight);
+            best.add(DoubleVector.fromArray(doubles, energyRow, col)).intoArray(current, col);
+            DoubleVector refs = zero.blend(-1.0, takeLeft).blend(1.0, takeRight);
+            ((ByteVector) refs.convertShape(VectorOperators.D2B, bytes, 0)).intoArray(pointers, col);
+        }
+        SCALAR.cumulativeMin(previous, energyRow, current, pointers, col, to, width);
+    }
+
+    @Override
+    public String name() {
+        return "vector(" + doubles.length() + " lanes)";
+    }
+}
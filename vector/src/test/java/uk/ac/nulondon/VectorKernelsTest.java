@@ -0,0 +1,87 @@
+package uk.ac.nulondon;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Tests that the vector kernels give bit-identical results to {@link ScalarKernels} on every
+ * double shape, whatever the preferred one of the machine running the tests.
+ */
+class VectorKernelsTest {
+
+    /**
+     * The double species checked: the 4-lane one, whose pointers stay scalar, the 8-lane one,
+     * and the preferred one of the platform.
+     */
+    private static final List<VectorSpecies<Double>> SPECIES =
+            List.of(DoubleVector.SPECIES_256, DoubleVector.SPECIES_512, DoubleVector.SPECIES_PREFERRED);
+
+    /**
+     * The row widths checked, around every lane count so the vector loops and their scalar tails
+     * both run.
+     */
+    private static final int[] WIDTHS = {1, 2, 3, 4, 5, 7, 8, 9, 15, 16, 17, 31, 33, 64, 100, 257};
+
+    private final ScalarKernels scalar = new ScalarKernels();
+
+    @Test
+    void cumulativeMinMatchesScalarCostsAndPointers() {
+        Random random = new Random(7);
+        for (VectorSpecies<Double> species : SPECIES) {
+            VectorKernels vector = new VectorKernels(species);
+            for (int width : WIDTHS) {
+                for (int trial = 0; trial < 20; trial++) {
+                    double[] previous = new double[width];
+                    double[] energyRow = new double[width];
+                    for (int col = 0; col < width; col++) {
+                        // few distinct values, so ties between parents are common
+                        previous[col] = random.nextInt(4);
+                        energyRow[col] = random.nextDouble() * 100;
+                    }
+                    int from = trial % 2 == 0 ? 0 : random.nextInt(width);
+                    int to = trial % 2 == 0 ? width : from + random.nextInt(width - from + 1);
+                    double[] expectedCosts = new double[width];
+                    double[] actualCosts = new double[width];
+                    byte[] expectedPointers = new byte[width];
+                    byte[] actualPointers = new byte[width];
+                    Arrays.fill(expectedPointers, (byte) 9);
+                    Arrays.fill(actualPointers, (byte) 9);
+                    scalar.cumulativeMin(previous, energyRow, expectedCosts, expectedPointers, from, to, width);
+                    vector.cumulativeMin(previous, energyRow, actualCosts, actualPointers, from, to, width);
+                    String where = vector.name() + ", width " + width + ", columns " + from + " to " + to;
+                    assertArrayEquals(expectedPointers, actualPointers, where + ": pointers");
+                    assertArrayEquals(expectedCosts, actualCosts, where + ": costs");
+                }
+            }
+        }
+    }
+
+    @Test
+    void sobelMatchesScalar() {
+        Random random = new Random(11);
+        for (VectorSpecies<Double> species : SPECIES) {
+            VectorKernels vector = new VectorKernels(species);
+            for (int width : WIDTHS) {
+                // padded as the image pads them, one blank column either side
+                short[][] rows = new short[3][width + 2];
+                for (short[] row : rows) {
+                    for (int col = 1; col <= width; col++) {
+                        row[col] = (short) random.nextInt(766);
+                    }
+                }
+                double[] expected = new double[width];
+                double[] actual = new double[width];
+                scalar.sobel(rows[0], rows[1], rows[2], width, expected);
+                vector.sobel(rows[0], rows[1], rows[2], width, actual);
+                assertArrayEquals(expected, actual, vector.name() + ", width " + width);
+            }
+        }
+    }
+}